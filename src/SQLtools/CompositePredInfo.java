@@ -1,5 +1,7 @@
 package SQLtools;
 
+import common.RelUtil;
+
 /**
  * Represents meta-data for a composite predicate
  * (i.e., a conjunction or disjunction of other
@@ -29,9 +31,7 @@ public class CompositePredInfo extends PredInfo {
 	public CompositePredInfo(PredConnector connector, 
 			PredInfo pred1, PredInfo pred2) {
 		super("(" + pred1.sql + " " + connector.toString() + 
-				" " + pred2.sql + ")");
-		this.tableIDs.or(pred1.tableIDs);
-		this.tableIDs.or(pred2.tableIDs);
+				" " + pred2.sql + ")", pred1.tableIDs | pred2.tableIDs);
 		this.pred1 = pred1;
 		this.pred2 = pred2;
 		this.connector = connector;
@@ -40,7 +40,8 @@ public class CompositePredInfo extends PredInfo {
 	}
 	@Override
 	public String toString() {
-		return "CompPred(" + connector.toString() + ", " + tableIDs.toString() + 
+		return "CompPred(" + connector.toString() + ", " + 
+				RelUtil.toString(tableIDs) + 
 				", " + pred1.toString() + ", " + pred2.toString() + ")";
 	}
 }
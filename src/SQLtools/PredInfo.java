@@ -1,7 +1,6 @@
 package SQLtools;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.List;
 import java.util.Stack;
 
@@ -26,20 +25,21 @@ public class PredInfo {
 	 * Contains the table IDs that the predicate
 	 * refers to.
 	 */
-	public final BitSet tableIDs;
+	public final long tableIDs;
 	/**
 	 * Columns that the predicate refers to.
 	 */
 	public final List<Column> columns;
 	/**
-	 * Initializes the predicate with an empty
+	 * Initializes the predicate with a given
 	 * table set.
 	 * 
-	 * @param sql	SQL string representing the predicate
+	 * @param sql		SQL string representing the predicate
+	 * @param tableIDs	tables that the predicate refers to
 	 */
-	PredInfo(String sql) {
+	PredInfo(String sql, long tableIDs) {
 		this.sql = sql;
-		this.tableIDs = new BitSet();
+		this.tableIDs = tableIDs;
 		this.columns = new ArrayList<Column>();
 	}
 	/**
@@ -52,15 +52,26 @@ public class PredInfo {
 	 */
 	public PredInfo(String sql, Stack<Integer> tableIDstack, 
 			Stack<Column> columnsStack) {
-		this(sql);
-		while (!tableIDstack.isEmpty()) {
-			Integer tableID = tableIDstack.pop();
-			tableIDs.set(tableID);
-		}
+		this(sql, popTables(tableIDstack));
 		while (!columnsStack.isEmpty()) {
 			columns.add(columnsStack.pop());
 		}
 	}
+	/**
+	 * Pops all table IDs from the given stack and returns
+	 * the relation containing the corresponding tables.
+	 * 
+	 * @param tableIDstack	a stack containing table IDs (stack becomes empty)
+	 * @return				relation containing all popped tables
+	 */
+	static long popTables(Stack<Integer> tableIDstack) {
+		long tableIDs = 0;
+		while (!tableIDstack.isEmpty()) {
+			Integer tableID = tableIDstack.pop();
+			tableIDs |= RelUtil.singleton(tableID);
+		}
+		return tableIDs;
+	}
 	/**
 	 * Returns true iff the predicate can be evaluated
 	 * on a given relation.
@@ -68,11 +79,12 @@ public class PredInfo {
 	 * @param rel	relation on which predicate is evaluated
 	 * @return		true iff the predicate can be evaluated
 	 */
-	public boolean applicable(BitSet rel) {
+	public boolean applicable(long rel) {
 		return RelUtil.isSubset(tableIDs, rel);
 	}
 	@Override
 	public String toString() {
-		return "Pred(" + sql + ") referring to " + tableIDs.toString();
+		return "Pred(" + sql + ") referring to " + 
+				RelUtil.toString(tableIDs);
 	}
 }
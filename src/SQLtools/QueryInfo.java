@@ -1,7 +1,6 @@
 package SQLtools;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +24,7 @@ public class QueryInfo {
 	/**
 	 * Relation representing all joined tables.
 	 */
-	public final BitSet allTables;
+	public final long allTables;
 	/**
 	 * Maps (integer) table ID to table alias.
 	 */
@@ -60,11 +59,12 @@ public class QueryInfo {
 		List<String> tableAliases = new ArrayList<String>();
 		tableAliases.addAll(tableAliasToName.keySet());
 		this.nrTables = tableAliases.size();
-		// Generate relation representing all tables
-		this.allTables = new BitSet();
-		for (int tableCtr=0; tableCtr<nrTables; ++tableCtr) {
-			allTables.set(tableCtr);
+		if (nrTables > RelUtil.MAX_TABLES) {
+			throw new Exception("Queries with more than " + 
+					RelUtil.MAX_TABLES + " tables are not supported");
 		}
+		// Generate relation representing all tables
+		this.allTables = RelUtil.firstTables(nrTables);
 		// Assign integer IDs to all tables/aliases
 		this.tableIDtoAlias = new HashMap<Integer, String>();
 		this.tableAliasToID = new HashMap<String, Integer>();
@@ -109,7 +109,7 @@ public class QueryInfo {
 	 * @param relation	target relation
 	 * @return			a list of applicable predicates
 	 */
-	public List<PredInfo> applicablePreds(BitSet relation) {
+	public List<PredInfo> applicablePreds(long relation) {
 		List<PredInfo> predList = new ArrayList<PredInfo>();
 		for (PredInfo pred : predicates) {
 			if (RelUtil.isSubset(pred.tableIDs, relation)) {
@@ -1,7 +1,6 @@
 package SQLtools;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -44,14 +43,14 @@ public class SQLgenerator {
 	 * @param relation	a table set
 	 * @return			a query requesting its cardinality
 	 */
-	public String countQuery(BitSet relation) {
+	public String countQuery(long relation) {
 		StringBuilder queryBuilder = new StringBuilder();
 		queryBuilder.append("SELECT Count(*) FROM ");
 		// Generate FROM clause
 		//System.out.println("Generating FROM clause");
 		List<String> fromItems = new ArrayList<String>();
-		for (int tableID=relation.nextSetBit(0); tableID>=0; 
-				tableID=relation.nextSetBit(tableID + 1)) {
+		for (int tableID=RelUtil.nextTable(relation, 0); tableID>=0; 
+				tableID=RelUtil.nextTable(relation, tableID + 1)) {
 			//System.out.println("tableID:\t" + tableID);
 			String alias = queryInfo.tableIDtoAlias.get(tableID);
 			String tableName = queryInfo.tableAliasToName.get(alias);
@@ -111,7 +110,55 @@ public class SQLgenerator {
 		List<PredInfo> todoPreds = new ArrayList<PredInfo>();
 		todoPreds.addAll(queryInfo.predicates);
 		return safeProbeQueryRec(plan, limit, 
-				ignoreBaseTables, todoPreds);
+				ignoreBaseTables, todoPreds, -1, null);
+	}
+	/**
+	 * Returns a column of the given table that appears in a join
+	 * predicate (qualified by the table alias) or null if no such
+	 * column exists. Such columns are used to partition probes.
+	 * 
+	 * @param table	table ID
+	 * @return		qualified join column or null
+	 */
+	public String joinColumn(int table) {
+		String alias = queryInfo.tableIDtoAlias.get(table);
+		for (PredInfo pred : queryInfo.predicates) {
+			if (RelUtil.cardinality(pred.tableIDs) > 1 &&
+					RelUtil.contains(pred.tableIDs, table)) {
+				for (Column col : pred.columns) {
+					if (col.getTable().getName().equals(alias)) {
+						return alias + "." + col.getColumnName();
+					}
+				}
+			}
+		}
+		return null;
+	}
+	/**
+	 * Generates a query like the safe probe query, except that
+	 * only one slice of the given table is considered. Slices
+	 * partition the table by hash values of a join column (the
+	 * predicate selecting a slice depends on the database system
+	 * and is passed by the caller). Hence, counts of results
+	 * joining that table add up over slices while each slice is
+	 * subject to the limits separately.
+	 * 
+	 * @param queryInfo			meta-data about input query
+	 * @param plan				specifies join order
+	 * @param limit				limit enforced on intermediate result sizes
+	 * @param ignoreBaseTables	whether to suppress limit on base tables
+	 * @param sliceTable		ID of table to partition
+	 * @param sliceFilter		predicate selecting slice of table
+	 * @return					an SQL query realizing the specified plan
+	 * @throws Exception
+	 */
+	public String slicedProbeQuery(QueryInfo queryInfo, ProbePlan plan, 
+			int limit, boolean ignoreBaseTables, int sliceTable, 
+			String sliceFilter) throws Exception {
+		List<PredInfo> todoPreds = new ArrayList<PredInfo>();
+		todoPreds.addAll(queryInfo.predicates);
+		return safeProbeQueryRec(plan, limit, ignoreBaseTables, 
+				todoPreds, sliceTable, sliceFilter);
 	}
 	/**
 	 * Returns set of columns appearing in unary predicates
@@ -197,17 +244,17 @@ public class SQLgenerator {
 	 * @param todoPreds		un-evaluated predicates
 	 * @return				a list of items for the SELECT clause
 	 */
-	Set<String> selectors(QueryInfo queryInfo, BitSet rel, 
+	Set<String> selectors(QueryInfo queryInfo, long rel, 
 			List<PredInfo> todoPreds) {
 		Set<String> selectors = new HashSet<String>();
-		boolean isLeaf = rel.cardinality() == 1;
+		boolean isLeaf = RelUtil.cardinality(rel) == 1;
 		Iterator<PredInfo> todoPredsIter = todoPreds.iterator();
 		while (todoPredsIter.hasNext()) {
 			PredInfo pred = todoPredsIter.next();
 			for (Column col : pred.columns) {
 				String alias = col.getTable().getName();
 				Integer tableID = queryInfo.tableAliasToID.get(alias);
-				if (rel.get(tableID)) {
+				if (RelUtil.contains(rel, tableID)) {
 					String colName = col.getColumnName();
 					String globalColName = alias + "_" + colName;
 					String selector = isLeaf ? colName + " AS " + 
@@ -235,11 +282,13 @@ public class SQLgenerator {
 	 * @param limit				limit enforced on intermediate result sizes
 	 * @param ignoreBaseTables	whether to suppress limit on base tables
 	 * @param todoPreds			predicates that were not yet applied
+	 * @param sliceTable		ID of table to restrict to a slice (or -1)
+	 * @param sliceFilter		predicate restricting table to slice
 	 * @return					an SQL query realizing the specified plan
 	 */
 	String safeProbeQueryRec(ProbePlan plan, int limit, 
-			boolean ignoreBaseTables, List<PredInfo> todoPreds) 
-					throws Exception {
+			boolean ignoreBaseTables, List<PredInfo> todoPreds, 
+			int sliceTable, String sliceFilter) throws Exception {
 		StringBuilder queryBuilder = new StringBuilder();
 		if (plan instanceof LeafPlan) {
 			LeafPlan leafPlan = (LeafPlan)plan;
@@ -257,15 +306,18 @@ public class SQLgenerator {
 			queryBuilder.append(" AS ");
 			queryBuilder.append(tableAlias);
 			// Insert all applicable predicates
-			BitSet tableSet = new BitSet();
-			tableSet.set(tableID);
+			long tableSet = RelUtil.singleton(tableID);
 			List<PredInfo> applicablePreds = queryInfo.applicablePreds(tableSet);
-			if (!applicablePreds.isEmpty()) {
+			if (!applicablePreds.isEmpty() || tableID == sliceTable) {
 				queryBuilder.append(" WHERE TRUE ");
 				for (PredInfo pred : applicablePreds) {
 					queryBuilder.append(" AND ");
 					queryBuilder.append(pred.sql);
 				}
+				if (tableID == sliceTable) {
+					queryBuilder.append(" AND ");
+					queryBuilder.append(sliceFilter);
+				}
 			}
 			// Add limit clause unless we ignore base tables
 			if (!ignoreBaseTables) {
@@ -276,15 +328,15 @@ public class SQLgenerator {
 			// Plan joins result of two prior plans -
 			// extract required information.
 			CompositePlan compositePlan = (CompositePlan)plan;
-			BitSet resultRel = compositePlan.resultRel;
+			long resultRel = compositePlan.resultRel;
 			ProbePlan plan1 = compositePlan.leftPlan;
 			ProbePlan plan2 = compositePlan.rightPlan;
-			BitSet plan1rel = plan1.resultRel;
-			BitSet plan2rel = plan2.resultRel;
-			String plan1SQL = safeProbeQueryRec(plan1, 
-					limit, ignoreBaseTables, todoPreds);
-			String plan2SQL = safeProbeQueryRec(plan2, 
-					limit, ignoreBaseTables, todoPreds);
+			long plan1rel = plan1.resultRel;
+			long plan2rel = plan2.resultRel;
+			String plan1SQL = safeProbeQueryRec(plan1, limit, 
+					ignoreBaseTables, todoPreds, sliceTable, sliceFilter);
+			String plan2SQL = safeProbeQueryRec(plan2, limit, 
+					ignoreBaseTables, todoPreds, sliceTable, sliceFilter);
 			// Get selectors (important: needs to happen
 			// after recursive invocations!).
 			Set<String> selectors = selectors(
@@ -11,8 +11,10 @@ import java.util.List;
 
 import SQLtools.QueryInfo;
 import common.QueryIO;
+import duckConnector.DuckConnector;
 import optimizers.safe.SafeNaive2;
 import pgConnector.PgConnector;
+import pgConnector.ProbeBackend;
 import reference.RefUtil;
 
 public class RunBenchmark {
@@ -39,13 +41,16 @@ public class RunBenchmark {
 		// Initialize benchmark-related variables
 		List<Boolean> timeouts = new ArrayList<Boolean>();
 		List<Long> millis = new ArrayList<Long>();
-		// Establish connection to the database
-		PgConnector pgConnector = new PgConnector(
-				runOnServer?"postgres":"immanueltrummer",
-				"", runOnServer?"imdb":"imdbload");
+		// Establish connection to the database (probes run on
+		// an embedded DuckDB database if a file is specified).
+		String duckDBpath = null;
+		ProbeBackend backend = duckDBpath != null ? 
+				new DuckConnector(duckDBpath, -1, null) :
+				new PgConnector(runOnServer?"postgres":"immanueltrummer",
+						"", runOnServer?"imdb":"imdbload");
 		// Initialize all compared algorithms
 		int timeoutMillis = 7200000;
-		SafeNaive2 safeNaive = new SafeNaive2(timeoutMillis, pgConnector);
+		SafeNaive2 safeNaive = new SafeNaive2(timeoutMillis, backend);
 		// Iterate over input queries
 		int testCaseCtr = 0;
 		for (int templateCtr=1; templateCtr<=33; ++templateCtr) {
@@ -110,7 +115,7 @@ public class RunBenchmark {
 		System.out.println(millis.toString());
 		System.out.println(timeouts.toString());
 		resultWriter.close();
-		pgConnector.closeAll();
+		backend.closeAll();
 	}
 	
 }
@@ -0,0 +1,64 @@
+package common;
+
+/**
+ * Contains the result of planning with cost intervals: the
+ * best plans according to lower and to upper cost bounds,
+ * both calculated in the same pass over the plan space, as
+ * well as lower bounds on the cost of completing a plan
+ * for the target relation from each relation.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class BoundsTable {
+	/**
+	 * Best plans according to lower bounds on relation cost.
+	 */
+	public final PlanTable lower;
+	/**
+	 * Best plans according to upper bounds on relation cost.
+	 */
+	public final PlanTable upper;
+	/**
+	 * Lower bound on the cost of generating the target relation
+	 * from the relation with given ordinal (excluding the cost
+	 * associated with that relation itself). Zero for base
+	 * tables and for the target relation.
+	 */
+	public final double[] completionCostLB;
+	/**
+	 * Upper bound on the cost of an optimal plan for the target
+	 * relation - relations whose lower cost bound exceeds this
+	 * ceiling are pruned during re-planning.
+	 */
+	public double costCeiling = Double.POSITIVE_INFINITY;
+	/**
+	 * Combines two plan tables for the same target relation
+	 * into one table of cost intervals.
+	 * 
+	 * @param lower		plans for lower cost bounds
+	 * @param upper		plans for upper cost bounds
+	 * @throws Exception	if plan tables refer to different targets
+	 */
+	public BoundsTable(PlanTable lower, PlanTable upper) throws Exception {
+		if (lower.targetRel != upper.targetRel ||
+				lower.ignoreTarget != upper.ignoreTarget ||
+				lower.planUtil != upper.planUtil) {
+			throw new Exception("Incompatible plan tables for bounds");
+		}
+		this.lower = lower;
+		this.upper = upper;
+		this.completionCostLB = new double[lower.planUtil.rels.length];
+	}
+	/**
+	 * Returns the lower bound on the cost of any plan generating
+	 * the target relation via the given relation.
+	 * 
+	 * @param rel	a relation from the plan space
+	 * @return		lower bound on total plan cost
+	 */
+	public double lowerCostBound(long rel) {
+		int relIndex = lower.planUtil.index(rel);
+		return lower.cost[relIndex] + completionCostLB[relIndex];
+	}
+}
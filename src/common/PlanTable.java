@@ -0,0 +1,144 @@
+package common;
+
+import java.util.Arrays;
+
+import common.plans.CompositePlan;
+import common.plans.LeafPlan;
+import common.plans.ProbePlan;
+
+/**
+ * Contains the result of dynamic programming over the
+ * plan space: cost of the best plan and the best split
+ * into join operands for each relation. Both are stored
+ * in arrays indexed by relation ordinals (as assigned
+ * by the plan utility). Plan trees are only created on
+ * request.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class PlanTable {
+	/**
+	 * Defines the plan space and relation ordinals.
+	 */
+	public final PlanUtil planUtil;
+	/**
+	 * Relation for which plans were generated.
+	 */
+	public final long targetRel;
+	/**
+	 * Whether the cost of writing the target relation is ignored.
+	 */
+	public final boolean ignoreTarget;
+	/**
+	 * Cost of best plan for each relation ordinal (infinite
+	 * for relations that are not subsets of the target).
+	 */
+	public final double[] cost;
+	/**
+	 * Cost of the best plan for each relation ordinal, excluding
+	 * the cost associated with the relation itself (i.e., the
+	 * summed cost of generating its join operands).
+	 */
+	public final double[] operandCost;
+	/**
+	 * Ordinal of the left operand relation in the best
+	 * plan for each relation (-1 for base tables).
+	 */
+	public final int[] bestLeft;
+	/**
+	 * Ordinal of the right operand relation in the best
+	 * plan for each relation (-1 for base tables).
+	 */
+	public final int[] bestRight;
+	/**
+	 * Initializes an empty plan table for given target.
+	 * 
+	 * @param planUtil		defines plan space
+	 * @param targetRel		relation to generate
+	 * @param ignoreTarget	if we ignore cost of writing target relation
+	 */
+	PlanTable(PlanUtil planUtil, long targetRel, boolean ignoreTarget) {
+		this.planUtil = planUtil;
+		this.targetRel = targetRel;
+		this.ignoreTarget = ignoreTarget;
+		int nrRels = planUtil.rels.length;
+		this.cost = new double[nrRels];
+		this.operandCost = new double[nrRels];
+		this.bestLeft = new int[nrRels];
+		this.bestRight = new int[nrRels];
+		Arrays.fill(cost, Double.POSITIVE_INFINITY);
+		Arrays.fill(operandCost, Double.POSITIVE_INFINITY);
+		Arrays.fill(bestLeft, -1);
+		Arrays.fill(bestRight, -1);
+	}
+	/**
+	 * Returns true iff a plan was generated for
+	 * the given relation.
+	 * 
+	 * @param rel	a relation from the plan space
+	 * @return		true iff the relation was planned
+	 */
+	public boolean contains(long rel) {
+		return RelUtil.isSubset(rel, targetRel);
+	}
+	/**
+	 * Returns the cost of the best plan generating
+	 * the given relation.
+	 * 
+	 * @param rel	a relation from the plan space
+	 * @return		cost of best plan for that relation
+	 */
+	public double cost(long rel) {
+		return cost[planUtil.index(rel)];
+	}
+	/**
+	 * Returns the cost of the best plan generating the given
+	 * relation, excluding the cost associated with the relation
+	 * itself (e.g., the cost of writing it out).
+	 * 
+	 * @param rel	a relation from the plan space
+	 * @return		cost of best plan without relation cost
+	 */
+	public double operandCost(long rel) {
+		return operandCost[planUtil.index(rel)];
+	}
+	/**
+	 * Materializes the best plan for the given relation or
+	 * returns null if no plan was generated for it (or if
+	 * all plans for that relation have infinite cost).
+	 * 
+	 * @param rel	a relation from the plan space
+	 * @return		best plan generating that relation
+	 */
+	public ProbePlan plan(long rel) {
+		if (!contains(rel)) {
+			return null;
+		}
+		int relIndex = planUtil.index(rel);
+		if (cost[relIndex] == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+		return planRec(relIndex);
+	}
+	/**
+	 * Materializes the best plan for the relation with
+	 * given ordinal (recursively).
+	 * 
+	 * @param relIndex	ordinal of relation to generate
+	 * @return			best plan for generating relation
+	 */
+	ProbePlan planRec(int relIndex) {
+		if (bestLeft[relIndex] < 0) {
+			long rel = planUtil.rels[relIndex];
+			int table = RelUtil.nextTable(rel, 0);
+			return new LeafPlan(planUtil.queryInfo,
+					table, cost[relIndex]);
+		} else {
+			ProbePlan leftPlan = planRec(bestLeft[relIndex]);
+			ProbePlan rightPlan = planRec(bestRight[relIndex]);
+			return new CompositePlan(leftPlan,
+					rightPlan, cost[relIndex]);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package common;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calculates best plans for a range of relations from
+ * the same cardinality level in parallel. Plans for
+ * relations within one level depend only on plans for
+ * relations from lower levels. Plans are calculated
+ * either for a single cost value or for lower and upper
+ * bounds on cost per relation.
+ * 
+ * @author immanueltrummer
+ *
+ */
+class PlanTask extends RecursiveAction {
+	/**
+	 * Compiler-generated ID.
+	 */
+	private static final long serialVersionUID = 6021548763935541387L;
+	/**
+	 * Defines the plan space and relation ordinals.
+	 */
+	final PlanUtil planUtil;
+	/**
+	 * Stores best plans found so far (null if planning bounds).
+	 */
+	final PlanTable planTable;
+	/**
+	 * Stores best plans for cost bounds (null if planning
+	 * for a single cost value).
+	 */
+	final BoundsTable bounds;
+	/**
+	 * Generation cost (or lower cost bound) for each relation ordinal.
+	 */
+	final double[] relCost;
+	/**
+	 * Upper cost bound for each relation ordinal (null if
+	 * planning for a single cost value).
+	 */
+	final double[] upperCost;
+	/**
+	 * Ordinals of relations to plan (null if the range
+	 * refers to relation ordinals directly).
+	 */
+	final int[] relIndices;
+	/**
+	 * First position in range to plan.
+	 */
+	final int start;
+	/**
+	 * Position after last position in range to plan.
+	 */
+	final int end;
+	/**
+	 * Initializes task for planning a range of relations.
+	 * 
+	 * @param planUtil	defines plan space
+	 * @param planTable	stores best plans found so far
+	 * @param relCost	generation cost for each relation ordinal
+	 * @param start		ordinal of first relation to plan
+	 * @param end		ordinal after last relation to plan
+	 */
+	PlanTask(PlanUtil planUtil, PlanTable planTable, 
+			double[] relCost, int start, int end) {
+		this(planUtil, planTable, null, relCost, null, null, start, end);
+	}
+	/**
+	 * Initializes task for planning a range of relations
+	 * according to lower and upper cost bounds.
+	 * 
+	 * @param planUtil		defines plan space
+	 * @param bounds		stores best plans found so far
+	 * @param lowerCost		lower cost bound for each relation ordinal
+	 * @param upperCost		upper cost bound for each relation ordinal
+	 * @param relIndices	relation ordinals or null (range of ordinals)
+	 * @param start			first position in range to plan
+	 * @param end			position after last position to plan
+	 */
+	PlanTask(PlanUtil planUtil, BoundsTable bounds, double[] lowerCost, 
+			double[] upperCost, int[] relIndices, int start, int end) {
+		this(planUtil, null, bounds, lowerCost, upperCost, 
+				relIndices, start, end);
+	}
+	/**
+	 * Initializes all fields of the task.
+	 * 
+	 * @param planUtil		defines plan space
+	 * @param planTable		stores best plans or null
+	 * @param bounds		stores best plans for bounds or null
+	 * @param relCost		generation cost or lower cost bound
+	 * @param upperCost		upper cost bound or null
+	 * @param relIndices	relation ordinals or null
+	 * @param start			first position in range to plan
+	 * @param end			position after last position to plan
+	 */
+	PlanTask(PlanUtil planUtil, PlanTable planTable, BoundsTable bounds,
+			double[] relCost, double[] upperCost, int[] relIndices, 
+			int start, int end) {
+		this.planUtil = planUtil;
+		this.planTable = planTable;
+		this.bounds = bounds;
+		this.relCost = relCost;
+		this.upperCost = upperCost;
+		this.relIndices = relIndices;
+		this.start = start;
+		this.end = end;
+	}
+	@Override
+	protected void compute() {
+		// Split range if it exceeds the task granularity
+		if (end - start > planUtil.parallelGrain) {
+			int middle = (start + end) / 2;
+			invokeAll(new PlanTask(planUtil, planTable, bounds, 
+					relCost, upperCost, relIndices, start, middle), 
+					new PlanTask(planUtil, planTable, bounds, 
+							relCost, upperCost, relIndices, middle, end));
+		} else if (bounds == null) {
+			planUtil.planRange(planTable, relCost, start, end);
+		} else {
+			planUtil.planRangeBounds(bounds, relCost, 
+					upperCost, relIndices, start, end);
+		}
+	}
+}
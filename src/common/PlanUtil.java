@@ -1,16 +1,17 @@
 package common;
 
+import java.util.ArrayDeque;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import SQLtools.PredInfo;
 import SQLtools.QueryInfo;
-import common.plans.CompositePlan;
-import common.plans.LeafPlan;
-import common.plans.ProbePlan;
 
 /**
  * Utility methods that are used by multiple planners.
@@ -23,61 +24,211 @@ public class PlanUtil {
 	 * Contains meta-data extracted from an SQL query.
 	 */
 	public final QueryInfo queryInfo;
+	/**
+	 * Maximal number of tables in relations that are generated
+	 * exhaustively. Larger relations are restricted to intervals
+	 * of a linear table order (i.e., the plan space is restricted
+	 * for queries joining more tables).
+	 */
+	public final int maxRelSize;
 	/**
 	 * All relations that a typical query planner
 	 * considers for the input query.
 	 */
-	public final Set<BitSet> allRels;
+	public final Set<Long> allRels;
 	/**
 	 * All relations considered by a typical planner
 	 * and grouped by their cardinality (i.e., the
 	 * number of joined tables).
 	 */
-	public final Map<Integer, Set<BitSet>> relsByCard;
+	public final Map<Integer, Set<Long>> relsByCard;
 	/**
 	 * Contains for each table set forming valid relations
 	 * (i.e., relations that avoid Cartesian product joins)
 	 * the list of all table subsets forming valid relations.
 	 */
-	public final Map<BitSet, Set<BitSet>> relToSubsets;
+	public final Map<Long, Set<Long>> relToSubsets;
 	/**
 	 * Maps each relation to a set of valid relations that
 	 * join a superset of tables compared to the initial
 	 * relation.
 	 */
-	public final Map<BitSet, Set<BitSet>> relToSupsets;
+	public final Map<Long, Set<Long>> relToSupsets;
+	/**
+	 * Contains all relations ordered by cardinality - the
+	 * position of a relation in this array is its ordinal.
+	 */
+	public final long[] rels;
+	/**
+	 * Maps each relation to its ordinal.
+	 */
+	public final Map<Long, Integer> relToIndex;
+	/**
+	 * Contains for each cardinality k the ordinal of the first
+	 * relation joining k tables (relations joining k tables
+	 * are stored at positions levelStart[k] to levelStart[k+1]-1).
+	 */
+	public final int[] levelStart;
+	/**
+	 * Splits of the relation with ordinal i into two join
+	 * operands are stored at positions splitStart[i] to
+	 * splitStart[i+1]-1 of the split arrays.
+	 */
+	public final int[] splitStart;
+	/**
+	 * Contains the ordinal of the left operand for each split.
+	 */
+	public final int[] splitLeft;
+	/**
+	 * Contains the ordinal of the right operand for each split.
+	 */
+	public final int[] splitRight;
+	/**
+	 * Ordinals of valid superset relations of the relation
+	 * with ordinal i are stored at positions supsetStart[i]
+	 * to supsetStart[i+1]-1 of the superset array.
+	 */
+	public final int[] supsetStart;
+	/**
+	 * Contains ordinals of superset relations.
+	 */
+	public final int[] supsets;
+	/**
+	 * Contains for each superset the ordinal of its complement
+	 * (i.e., the join operand needed to complete the superset).
+	 */
+	public final int[] supsetComplements;
+	/**
+	 * Levels of the plan space (i.e., relations with the same
+	 * cardinality) are planned in parallel if they contain at
+	 * least that many relations.
+	 */
+	public int parallelThreshold = 2000;
+	/**
+	 * Maximal number of relations planned by one parallel task.
+	 */
+	public int parallelGrain = 250;
+	/**
+	 * Thread pool used for parallel planning.
+	 */
+	public ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
 	/**
 	 * Generates plan space for input query.
 	 * 
 	 * @param queryInfo	information about SQL query
 	 */
 	public PlanUtil(QueryInfo queryInfo) {
+		this(queryInfo, queryInfo.nrTables);
+	}
+	/**
+	 * Generates plan space for input query, restricting relations
+	 * with more than the given number of tables to intervals of a
+	 * linear table order (all intervals avoiding Cartesian product
+	 * joins are considered and split into two intervals). This
+	 * allows to treat queries with many tables for which the
+	 * number of valid relations is prohibitive.
+	 * 
+	 * @param queryInfo		information about SQL query
+	 * @param maxRelSize	maximal number of tables for exhaustive
+	 * 						generation of relations
+	 */
+	public PlanUtil(QueryInfo queryInfo, int maxRelSize) {
 		this.queryInfo = queryInfo;
-		this.allRels = generateRels(queryInfo);
+		this.maxRelSize = Math.min(maxRelSize, queryInfo.nrTables);
+		this.allRels = new HashSet<Long>();
+		this.relToSubsets = new HashMap<Long, Set<Long>>();
+		this.relToSupsets = new HashMap<Long, Set<Long>>();
+		long[] neighbors = joinGraph(queryInfo);
+		if (this.maxRelSize < queryInfo.nrTables) {
+			// Treat predicates on more than two tables like cliques
+			// of binary predicates and remove invalid relations.
+			long[] cliques = neighbors != null ? 
+					neighbors : cliqueGraph(queryInfo);
+			enumerateRels(cliques, this.maxRelSize, allRels, 
+					relToSubsets, relToSupsets);
+			if (neighbors == null) {
+				filterRels(queryInfo, allRels, 
+						relToSubsets, relToSupsets);
+			}
+			// Add intervals of linear order for larger relations
+			linearizeRels(queryInfo, linearOrder(cliques), 
+					this.maxRelSize, allRels, 
+					relToSubsets, relToSupsets);
+		} else if (neighbors != null) {
+			// Enumerate connected sub-graphs of join graph
+			enumerateRels(neighbors, this.maxRelSize, allRels, 
+					relToSubsets, relToSupsets);
+		} else {
+			// Fall back to exhaustive enumeration if predicates
+			// connect more than two tables at once.
+			allRels.addAll(generateRels(queryInfo));
+			decomposeRels(allRels, relToSubsets, relToSupsets);
+		}
 		//System.out.println("Generated all rels");
 		this.relsByCard = groupRels(allRels, queryInfo.nrTables);
-		this.relToSubsets = new HashMap<BitSet, Set<BitSet>>();
-		this.relToSupsets = new HashMap<BitSet, Set<BitSet>>();
-		decomposeRels(allRels, relToSubsets, relToSupsets);
+		// Assign ordinals to relations in cardinality order
+		int nrTables = queryInfo.nrTables;
+		int nrRels = allRels.size();
+		this.rels = new long[nrRels];
+		this.relToIndex = new HashMap<Long, Integer>();
+		this.levelStart = new int[nrTables+2];
+		int relCtr = 0;
+		for (int k=1; k<=nrTables; ++k) {
+			levelStart[k] = relCtr;
+			for (long rel : relsByCard.get(k)) {
+				rels[relCtr] = rel;
+				relToIndex.put(rel, relCtr);
+				++relCtr;
+			}
+		}
+		levelStart[nrTables+1] = relCtr;
+		// Store splits of each relation in flat arrays
+		int nrSplits = 0;
+		for (Set<Long> subsets : relToSubsets.values()) {
+			nrSplits += subsets.size();
+		}
+		this.splitStart = new int[nrRels+1];
+		this.splitLeft = new int[nrSplits];
+		this.splitRight = new int[nrSplits];
+		int splitCtr = 0;
+		for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+			splitStart[relIndex] = splitCtr;
+			long rel = rels[relIndex];
+			for (long subRel : relToSubsets.get(rel)) {
+				splitLeft[splitCtr] = relToIndex.get(subRel);
+				splitRight[splitCtr] = relToIndex.get(rel & ~subRel);
+				++splitCtr;
+			}
+		}
+		splitStart[nrRels] = splitCtr;
+		// Store supersets of each relation in flat arrays
+		int nrSupsets = 0;
+		for (Set<Long> supRels : relToSupsets.values()) {
+			nrSupsets += supRels.size();
+		}
+		this.supsetStart = new int[nrRels+1];
+		this.supsets = new int[nrSupsets];
+		this.supsetComplements = new int[nrSupsets];
+		int supsetCtr = 0;
+		for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+			supsetStart[relIndex] = supsetCtr;
+			long rel = rels[relIndex];
+			for (long supRel : relToSupsets.get(rel)) {
+				supsets[supsetCtr] = relToIndex.get(supRel);
+				supsetComplements[supsetCtr] = relToIndex.get(supRel & ~rel);
+				++supsetCtr;
+			}
+		}
+		supsetStart[nrRels] = supsetCtr;
 	}
 	/**
-	 * Transforms an integer value representing a
-	 * table subset into a corresponding BitSet.
+	 * Returns the ordinal of the given relation.
 	 * 
-	 * @param relID	integer representing table set
-	 * @return		BitSet representation of table set
+	 * @param rel	a relation from the plan space
+	 * @return		ordinal of that relation
 	 */
-	static BitSet intToRel(int relID) {
-		BitSet rel = new BitSet();
-		int tableCtr = 0;
-		while (relID != 0) {
-			if (relID % 2 == 1) {
-				rel.set(tableCtr);
-			}
-			relID = relID/2;
-			++tableCtr;
-		}
-		return rel;
+	public int index(long rel) {
+		return relToIndex.get(rel);
 	}
 	/**
 	 * Returns true iff the given relation would be
@@ -88,34 +239,26 @@ public class PlanUtil {
 	 * @param queryInfo	information on query predicates
 	 * @return			true iff the relation should be considered
 	 */
-	static boolean isValid(BitSet relation, QueryInfo queryInfo) {
+	static boolean isValid(long relation, QueryInfo queryInfo) {
 		// Check whether all activated tables are reachable
 		// from a first table when following predicate links.
-		int firstTable = relation.nextSetBit(0);
-		BitSet reachable = new BitSet();
-		reachable.set(firstTable);
+		long reachable = Long.lowestOneBit(relation);
 		boolean updated = true;
 		while (updated) {
 			updated = false;
 			for (PredInfo pred : queryInfo.predicates) {
-				/*
-				System.out.println("Reachable:\t" + reachable.toString());
-				System.out.println("Predicate:\t" + pred.tableIDs.toString());
-				System.out.println("isSubset:\t" + RelUtil.isSubset(pred.tableIDs, relation));
-				System.out.println("intersects:\t" + pred.tableIDs.intersects(reachable));
-				*/
 				// We assume unary and binary predicates
 				if (RelUtil.isSubset(pred.tableIDs, relation) &&
-						pred.tableIDs.intersects(reachable)) {
-					BitSet beforeOr = (BitSet)reachable.clone();
-					reachable.or(pred.tableIDs);
-					if (!reachable.equals(beforeOr)) {
-						updated = true;						
+						(pred.tableIDs & reachable) != 0) {
+					long afterOr = reachable | pred.tableIDs;
+					if (afterOr != reachable) {
+						reachable = afterOr;
+						updated = true;
 					}
 				}
 			}
 		}
-		return reachable.equals(relation);
+		return reachable == relation;
 	}
 	/**
 	 * Returns all relations that would be considered
@@ -125,14 +268,11 @@ public class PlanUtil {
 	 * @param queryInfo	information on query predicates
 	 * @return			all candidate relations for planner
 	 */
-	static Set<BitSet> generateRels(QueryInfo queryInfo) {
-		Set<BitSet> rels = new HashSet<BitSet>();
+	static Set<Long> generateRels(QueryInfo queryInfo) {
+		Set<Long> rels = new HashSet<Long>();
 		// Iterate over tentative relation subsets
-		int maxRelCount = 2 << (queryInfo.nrTables) - 1;
-		for (int relID=1; relID<maxRelCount; ++relID) {
-			// Transform relation into BitSet
-			BitSet relation = intToRel(relID);
-			//System.out.println("relID:\t" + relation.toString());
+		long maxRelCount = 1L << queryInfo.nrTables;
+		for (long relation=1; relation<maxRelCount; ++relation) {
 			// Check whether relation is valid
 			if (isValid(relation, queryInfo)) {
 				//System.out.println("(is valid)");
@@ -148,17 +288,17 @@ public class PlanUtil {
 	 * @param nrTables	number of tables in query
 	 * @return			a mapping from relation cardinality to relations
 	 */
-	static Map<Integer, Set<BitSet>> groupRels(
-			Set<BitSet> allRels, int nrTables) {
-		Map<Integer, Set<BitSet>> relsByCard = 
-				new HashMap<Integer, Set<BitSet>>();
+	static Map<Integer, Set<Long>> groupRels(
+			Set<Long> allRels, int nrTables) {
+		Map<Integer, Set<Long>> relsByCard = 
+				new HashMap<Integer, Set<Long>>();
 		// Create empty list for each cardinality
 		for (int k=1; k<=nrTables; ++k) {
-			relsByCard.put(k, new HashSet<BitSet>());
+			relsByCard.put(k, new HashSet<Long>());
 		}
 		// Group all relations by cardinality
-		for (BitSet relation : allRels) {
-			int card = relation.cardinality();
+		for (long relation : allRels) {
+			int card = RelUtil.cardinality(relation);
 			relsByCard.get(card).add(relation);
 		}
 		return relsByCard;
@@ -171,24 +311,22 @@ public class PlanUtil {
 	 * @param relToSupsets	maps table sets to table supersets
 	 * @return				mapping from relation to valid table subsets
 	 */
-	static void decomposeRels(Set<BitSet> allRels,
-			Map<BitSet, Set<BitSet>> relToSubsets,
-			Map<BitSet, Set<BitSet>> relToSupsets) {
+	static void decomposeRels(Set<Long> allRels,
+			Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
 		// Initialize mapping from relations to sub-relations
-		for (BitSet rel : allRels) {
-			relToSubsets.put(rel, new HashSet<BitSet>());
-			relToSupsets.put(rel, new HashSet<BitSet>());
+		for (long rel : allRels) {
+			relToSubsets.put(rel, new HashSet<Long>());
+			relToSupsets.put(rel, new HashSet<Long>());
 		}
 		// Test pairs of valid relations whether 
 		// one is a subset of the other.
-		for (BitSet rel : allRels) {
-			for (BitSet subRel : allRels) {
+		for (long rel : allRels) {
+			for (long subRel : allRels) {
 				if (RelUtil.isSubset(subRel, rel)) {
 					// Test if the complement of the 
 					// sub-relation is also valid.
-					BitSet complement = new BitSet();
-					complement.or(rel);
-					complement.andNot(subRel);
+					long complement = rel & ~subRel;
 					if (allRels.contains(complement)) {
 						relToSubsets.get(rel).add(subRel);
 						relToSupsets.get(subRel).add(rel);
@@ -198,74 +336,749 @@ public class PlanUtil {
 			}
 		}
 	}
+	/**
+	 * Returns for each table the set of tables that are connected
+	 * to it via join predicates. Returns null if at least one
+	 * predicate refers to more than two tables (the join graph
+	 * is a hyper-graph in that case).
+	 * 
+	 * @param queryInfo	information on query predicates
+	 * @return			neighbor tables for each table or null
+	 */
+	static long[] joinGraph(QueryInfo queryInfo) {
+		long[] neighbors = new long[queryInfo.nrTables];
+		for (PredInfo pred : queryInfo.predicates) {
+			int nrPredTables = RelUtil.cardinality(pred.tableIDs);
+			if (nrPredTables > 2) {
+				return null;
+			} else if (nrPredTables == 2) {
+				int table1 = RelUtil.nextTable(pred.tableIDs, 0);
+				int table2 = RelUtil.nextTable(pred.tableIDs, table1+1);
+				neighbors[table1] |= RelUtil.singleton(table2);
+				neighbors[table2] |= RelUtil.singleton(table1);
+			}
+		}
+		return neighbors;
+	}
+	/**
+	 * Returns for each table the set of tables that appear
+	 * together with it in at least one predicate (i.e., each
+	 * predicate is treated like a clique of binary predicates).
+	 * 
+	 * @param queryInfo	information on query predicates
+	 * @return			neighbor tables for each table
+	 */
+	static long[] cliqueGraph(QueryInfo queryInfo) {
+		long[] neighbors = new long[queryInfo.nrTables];
+		for (PredInfo pred : queryInfo.predicates) {
+			long tables = pred.tableIDs;
+			for (int table=RelUtil.nextTable(tables, 0); table>=0; 
+					table=RelUtil.nextTable(tables, table+1)) {
+				neighbors[table] |= tables & ~RelUtil.singleton(table);
+			}
+		}
+		return neighbors;
+	}
+	/**
+	 * Returns all tables that are connected to at least one
+	 * table in the given relation but are not contained in it.
+	 * 
+	 * @param rel		a relation
+	 * @param neighbors	neighbor tables for each table
+	 * @return			neighborhood of relation
+	 */
+	static long neighborhood(long rel, long[] neighbors) {
+		long neighborhood = 0;
+		for (int table=RelUtil.nextTable(rel, 0); table>=0; 
+				table=RelUtil.nextTable(rel, table+1)) {
+			neighborhood |= neighbors[table];
+		}
+		return neighborhood & ~rel;
+	}
+	/**
+	 * Enumerates all relations that avoid Cartesian product joins
+	 * (i.e., connected sub-graphs of the join graph) together with
+	 * their valid decompositions into two connected operands. Each
+	 * relation and each decomposition is generated exactly once
+	 * following the DPccp scheme by Moerkotte and Neumann, so the
+	 * run time is proportional to the size of the result. Only
+	 * relations with bounded number of tables are generated.
+	 * 
+	 * @param neighbors		neighbor tables for each table
+	 * @param maxRelSize	maximal number of tables per relation
+	 * @param allRels		collects all connected relations
+	 * @param relToSubsets	maps table sets to table subsets
+	 * @param relToSupsets	maps table sets to table supersets
+	 */
+	static void enumerateRels(long[] neighbors, int maxRelSize, 
+			Set<Long> allRels, Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
+		int nrTables = neighbors.length;
+		for (int table=nrTables-1; table>=0; --table) {
+			long startRel = RelUtil.singleton(table);
+			// Only tables with higher IDs may be added
+			long excluded = (startRel << 1) - 1;
+			addRel(startRel, maxRelSize, neighbors, allRels, 
+					relToSubsets, relToSupsets);
+			expandRel(startRel, excluded, 0, maxRelSize, neighbors, 
+					allRels, relToSubsets, relToSupsets);
+		}
+	}
+	/**
+	 * Recursively expands a connected relation by adding tables
+	 * from its neighborhood, avoiding excluded tables. If no
+	 * partner relation is specified, each newly generated
+	 * relation is added to the set of all relations. Otherwise,
+	 * each generated relation is treated as join partner for
+	 * the given relation. Relations are only expanded as long
+	 * as the union with the partner has bounded size.
+	 * 
+	 * @param rel			a connected relation to expand
+	 * @param excluded		tables that must not be added
+	 * @param partner		join partner or zero
+	 * @param maxRelSize	maximal number of tables per relation
+	 * @param neighbors		neighbor tables for each table
+	 * @param allRels		collects all connected relations
+	 * @param relToSubsets	maps table sets to table subsets
+	 * @param relToSupsets	maps table sets to table supersets
+	 */
+	static void expandRel(long rel, long excluded, long partner, 
+			int maxRelSize, long[] neighbors, Set<Long> allRels,
+			Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
+		long extensions = neighborhood(rel, neighbors) & ~excluded;
+		int maxExtension = maxRelSize - RelUtil.cardinality(rel | partner);
+		List<Long> subsets = RelUtil.subsets(extensions, maxExtension);
+		// Generate all expanded relations first
+		for (long subset : subsets) {
+			long newRel = rel | subset;
+			if (partner == 0) {
+				addRel(newRel, maxRelSize, neighbors, allRels, 
+						relToSubsets, relToSupsets);
+			} else {
+				addPair(partner, newRel, relToSubsets, relToSupsets);
+			}
+		}
+		// Expand further while excluding current neighborhood
+		for (long subset : subsets) {
+			expandRel(rel | subset, excluded | extensions, partner, 
+					maxRelSize, neighbors, allRels, 
+					relToSubsets, relToSupsets);
+		}
+	}
+	/**
+	 * Adds a new connected relation and generates all connected
+	 * relations that can be joined with it without creating
+	 * duplicate decompositions (and without exceeding the
+	 * maximal relation size).
+	 * 
+	 * @param rel			a newly generated connected relation
+	 * @param maxRelSize	maximal number of tables per relation
+	 * @param neighbors		neighbor tables for each table
+	 * @param allRels		collects all connected relations
+	 * @param relToSubsets	maps table sets to table subsets
+	 * @param relToSupsets	maps table sets to table supersets
+	 */
+	static void addRel(long rel, int maxRelSize, long[] neighbors, 
+			Set<Long> allRels, Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
+		allRels.add(rel);
+		relSet(relToSubsets, rel);
+		relSet(relToSupsets, rel);
+		if (RelUtil.cardinality(rel) >= maxRelSize) {
+			return;
+		}
+		// Exclude relation and tables with lower IDs than minimum
+		long excluded = rel | ((Long.lowestOneBit(rel) << 1) - 1);
+		long candidates = neighborhood(rel, neighbors) & ~excluded;
+		// Iterate over candidate tables in descending order
+		for (long remaining=candidates; remaining!=0; ) {
+			long partner = Long.highestOneBit(remaining);
+			remaining &= ~partner;
+			long lowerCandidates = candidates & ((partner << 1) - 1);
+			addPair(rel, partner, relToSubsets, relToSupsets);
+			expandRel(partner, excluded | lowerCandidates, rel, 
+					maxRelSize, neighbors, allRels, 
+					relToSubsets, relToSupsets);
+		}
+	}
+	/**
+	 * Registers the join of two connected relations as a valid
+	 * decomposition of their union.
+	 * 
+	 * @param rel1			first join operand
+	 * @param rel2			second join operand
+	 * @param relToSubsets	maps table sets to table subsets
+	 * @param relToSupsets	maps table sets to table supersets
+	 */
+	static void addPair(long rel1, long rel2, 
+			Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
+		long rel = rel1 | rel2;
+		Set<Long> subsets = relSet(relToSubsets, rel);
+		subsets.add(rel1);
+		subsets.add(rel2);
+		relSet(relToSupsets, rel1).add(rel);
+		relSet(relToSupsets, rel2).add(rel);
+	}
+	/**
+	 * Removes relations that are not valid (i.e., that require
+	 * Cartesian product joins) as well as decompositions that
+	 * refer to invalid relations.
+	 * 
+	 * @param queryInfo		information on query predicates
+	 * @param allRels		relations to filter
+	 * @param relToSubsets	maps table sets to table subsets
+	 * @param relToSupsets	maps table sets to table supersets
+	 */
+	static void filterRels(QueryInfo queryInfo, Set<Long> allRels,
+			Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
+		Set<Long> invalidRels = new HashSet<Long>();
+		for (long rel : allRels) {
+			if (!isValid(rel, queryInfo)) {
+				invalidRels.add(rel);
+			}
+		}
+		allRels.removeAll(invalidRels);
+		for (long rel : invalidRels) {
+			relToSubsets.remove(rel);
+			relToSupsets.remove(rel);
+		}
+		// Remove decompositions involving invalid relations
+		for (long rel : allRels) {
+			Iterator<Long> subIter = relToSubsets.get(rel).iterator();
+			while (subIter.hasNext()) {
+				long subRel = subIter.next();
+				if (invalidRels.contains(subRel) ||
+						invalidRels.contains(rel & ~subRel)) {
+					subIter.remove();
+				}
+			}
+			Iterator<Long> supIter = relToSupsets.get(rel).iterator();
+			while (supIter.hasNext()) {
+				long supRel = supIter.next();
+				if (invalidRels.contains(supRel) || 
+						invalidRels.contains(supRel & ~rel)) {
+					supIter.remove();
+				}
+			}
+		}
+	}
+	/**
+	 * Orders tables via breadth-first traversal of the join
+	 * graph, starting from the table with lowest ID (so each
+	 * prefix of the order is connected if the graph is).
+	 * 
+	 * @param neighbors		neighbor tables for each table
+	 * @return				table IDs in linear order
+	 */
+	static int[] linearOrder(long[] neighbors) {
+		int nrTables = neighbors.length;
+		int[] order = new int[nrTables];
+		int orderCtr = 0;
+		long visited = 0;
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		for (int start=0; start<nrTables; ++start) {
+			if (RelUtil.contains(visited, start)) {
+				continue;
+			}
+			visited |= RelUtil.singleton(start);
+			queue.add(start);
+			while (!queue.isEmpty()) {
+				int table = queue.poll();
+				order[orderCtr] = table;
+				++orderCtr;
+				long newTables = neighbors[table] & ~visited;
+				for (int neighbor=RelUtil.nextTable(newTables, 0); 
+						neighbor>=0; neighbor=RelUtil.nextTable(
+								newTables, neighbor+1)) {
+					queue.add(neighbor);
+				}
+				visited |= newTables;
+			}
+		}
+		return order;
+	}
+	/**
+	 * Adds relations that contain more than the maximal number
+	 * of tables for exhaustive generation. Such relations must
+	 * form an interval in the given table order, they must be
+	 * valid, and they are only split into two intervals that
+	 * are valid relations themselves. Relations without such
+	 * split are not added.
+	 * 
+	 * @param queryInfo		information on query predicates
+	 * @param order			linear order of table IDs
+	 * @param maxRelSize	maximal size of exhaustively generated relations
+	 * @param allRels		collects all relations
+	 * @param relToSubsets	maps table sets to table subsets
+	 * @param relToSupsets	maps table sets to table supersets
+	 */
+	static void linearizeRels(QueryInfo queryInfo, int[] order, 
+			int maxRelSize, Set<Long> allRels,
+			Map<Long, Set<Long>> relToSubsets,
+			Map<Long, Set<Long>> relToSupsets) {
+		int nrTables = order.length;
+		for (int size=maxRelSize+1; size<=nrTables; ++size) {
+			for (int start=0; start+size<=nrTables; ++start) {
+				long rel = 0;
+				for (int pos=start; pos<start+size; ++pos) {
+					rel |= RelUtil.singleton(order[pos]);
+				}
+				if (!isValid(rel, queryInfo)) {
+					continue;
+				}
+				// Iterate over splits into two intervals
+				long left = 0;
+				for (int pos=start; pos<start+size-1; ++pos) {
+					left |= RelUtil.singleton(order[pos]);
+					long right = rel & ~left;
+					if (allRels.contains(left) && allRels.contains(right)) {
+						addPair(left, right, relToSubsets, relToSupsets);
+					}
+				}
+				if (relToSubsets.containsKey(rel)) {
+					allRels.add(rel);
+					relSet(relToSupsets, rel);
+				}
+			}
+		}
+	}
+	/**
+	 * Returns the set associated with a relation in the given
+	 * map, inserting an empty set if no set is associated yet.
+	 * 
+	 * @param relToSet	maps relations to relation sets
+	 * @param rel		retrieve set associated with that relation
+	 * @return			set associated with relation
+	 */
+	static Set<Long> relSet(Map<Long, Set<Long>> relToSet, long rel) {
+		Set<Long> set = relToSet.get(rel);
+		if (set == null) {
+			set = new HashSet<Long>();
+			relToSet.put(rel, set);
+		}
+		return set;
+	}
 	/**
 	 * Generates a plan for producing the specified target relation,
 	 * using a given cost model that is based on relation generation
 	 * cost. The relation to generate must be one of the relations
-	 * generated during initialization. The method returns not only
-	 * the best plan for the target relation but also the best plans
-	 * for all valid table subsets of the target relation.
+	 * generated during initialization. The method calculates not
+	 * only the best plan for the target relation but also the best
+	 * plans for all valid table subsets of the target relation.
+	 * Planning for all query tables therefore yields in one pass
+	 * the best plan rooted at each relation (the plan table also
+	 * stores plan cost without the cost of the root relation).
+	 * 
+	 * @param targetRel		the relation to generate
+	 * @param relCost		generation cost for each relation ordinal
+	 * @param ignoreTarget	if we ignore cost of writing target relation
+	 * @return				table containing optimal plans
+	 */
+	public PlanTable plan(long targetRel, 
+			double[] relCost, boolean ignoreTarget) {
+		PlanTable planTable = new PlanTable(this, targetRel, ignoreTarget);
+		// Iterate over relations in cardinality order
+		int cardinality = RelUtil.cardinality(targetRel);
+		for (int k=1; k<=cardinality; ++k) {
+			int start = levelStart[k];
+			int end = levelStart[k+1];
+			// Relations in the same level can be planned independently
+			if (end - start >= parallelThreshold) {
+				forkJoinPool.invoke(new PlanTask(
+						this, planTable, relCost, start, end));
+			} else {
+				planRange(planTable, relCost, start, end);
+			}
+		}
+		return planTable;
+	}
+	/**
+	 * Calculates best plans for a range of relations, assuming
+	 * that best plans for all their sub-relations are available.
+	 * Only relations that are subsets of the target are planned.
+	 * 
+	 * @param planTable	stores best plans found so far
+	 * @param relCost	generation cost for each relation ordinal
+	 * @param start		ordinal of first relation to plan
+	 * @param end		ordinal after last relation to plan
+	 */
+	void planRange(PlanTable planTable, double[] relCost, 
+			int start, int end) {
+		long targetRel = planTable.targetRel;
+		for (int relIndex=start; relIndex<end; ++relIndex) {
+			// Check if this relation is relevant
+			if (RelUtil.isSubset(rels[relIndex], targetRel)) {
+				planRel(planTable, relIndex, relCost);
+			}
+		}
+	}
+	/**
+	 * Updates plans after the generation cost of some relations
+	 * has changed. Only plans for the changed relations and for
+	 * their (transitive) supersets are re-calculated and only
+	 * if the cost of generating one of their sub-relations has
+	 * changed. Updates the given plan table in place, the result
+	 * is the same as when planning from scratch.
+	 * 
+	 * @param planTable		plans generated for previous relation cost
+	 * @param relCost		new generation cost for each relation ordinal
+	 * @param changedRels	relations whose generation cost has changed
+	 */
+	public void replan(PlanTable planTable, 
+			double[] relCost, Set<Long> changedRels) {
+		long targetRel = planTable.targetRel;
+		double[] bestCost = planTable.cost;
+		// Collect ordinals of relations to update
+		BitSet toUpdate = new BitSet();
+		for (long rel : changedRels) {
+			if (RelUtil.isSubset(rel, targetRel)) {
+				toUpdate.set(index(rel));
+			}
+		}
+		// Update relations in cardinality order
+		for (int relIndex=toUpdate.nextSetBit(0); relIndex>=0; 
+				relIndex=toUpdate.nextSetBit(relIndex+1)) {
+			double oldCost = bestCost[relIndex];
+			planRel(planTable, relIndex, relCost);
+			// Propagate cost changes to superset relations
+			if (Double.compare(oldCost, bestCost[relIndex]) != 0) {
+				for (int supset=supsetStart[relIndex]; 
+						supset<supsetStart[relIndex+1]; ++supset) {
+					int supIndex = supsets[supset];
+					if (RelUtil.isSubset(rels[supIndex], targetRel)) {
+						toUpdate.set(supIndex);
+					}
+				}
+			}
+		}
+	}
+	/**
+	 * Calculates the best plan for one relation, assuming that
+	 * best plans for all its sub-relations are available. The
+	 * relation is skipped (i.e., assigned infinite cost without
+	 * considering any splits) if its own cost is infinite and
+	 * splits with infinite cost are never selected.
+	 * 
+	 * @param planTable	stores best plans found so far
+	 * @param relIndex	ordinal of relation to plan
+	 * @param relCost	generation cost for each relation ordinal
+	 */
+	void planRel(PlanTable planTable, int relIndex, double[] relCost) {
+		double[] bestCost = planTable.cost;
+		int[] bestLeft = planTable.bestLeft;
+		int[] bestRight = planTable.bestRight;
+		// Base tables are read directly
+		if (relIndex < levelStart[2]) {
+			bestCost[relIndex] = relCost[relIndex];
+			planTable.operandCost[relIndex] = 0;
+			return;
+		}
+		// We do not count the cost of writing out final result
+		double thisCost = rels[relIndex] == planTable.targetRel && 
+				planTable.ignoreTarget ? 0 : relCost[relIndex];
+		bestLeft[relIndex] = -1;
+		bestRight[relIndex] = -1;
+		// Skip relations that cannot be part of any plan
+		if (thisCost == Double.POSITIVE_INFINITY) {
+			planTable.operandCost[relIndex] = Double.POSITIVE_INFINITY;
+			bestCost[relIndex] = Double.POSITIVE_INFINITY;
+			return;
+		}
+		// Find best split into join operands
+		double bestOperandCost = Double.POSITIVE_INFINITY;
+		for (int split=splitStart[relIndex]; 
+				split<splitStart[relIndex+1]; ++split) {
+			int left = splitLeft[split];
+			int right = splitRight[split];
+			double newCost = bestCost[left] + bestCost[right];
+			if (newCost <= bestOperandCost && 
+					newCost != Double.POSITIVE_INFINITY) {
+				bestOperandCost = newCost;
+				bestLeft[relIndex] = left;
+				bestRight[relIndex] = right;
+			}
+		}
+		planTable.operandCost[relIndex] = bestOperandCost;
+		bestCost[relIndex] = bestOperandCost + thisCost;
+	}
+	/**
+	 * Generates plans for the target relation according to lower
+	 * and to upper bounds on relation cost in one pass over the
+	 * plan space (both bounds share the same splits). Afterwards,
+	 * calculates lower bounds on the cost of completing a plan
+	 * for the target relation from each of its sub-relations.
+	 * No relations are pruned since no cost ceiling and no
+	 * completion cost bounds are available initially.
 	 * 
 	 * @param targetRel		the relation to generate
-	 * @param relCost		associates relations with generation cost
+	 * @param lowerCost		lower cost bound for each relation ordinal
+	 * @param upperCost		upper cost bound for each relation ordinal
 	 * @param ignoreTarget	if we ignore cost of writing target relation
-	 * @return				a mapping from relations to optimal plans
-	 */
-	public Map<BitSet, ProbePlan> plan(BitSet targetRel, 
-			Map<BitSet, Double> relCost, boolean ignoreTarget) {
-		//System.out.println("Planning with relation cost:");
-		//System.out.println(relCost.toString());
-		// Get the number of tables in target relation
-		int cardinality = targetRel.cardinality();
-		// Initialize plans for base tables
-		//Map<BitSet, Double> bestCost = new HashMap<BitSet, Double>();
-		Map<BitSet, ProbePlan> bestPlan = new HashMap<BitSet, ProbePlan>();
-		for (int table=targetRel.nextSetBit(0); table>=0; 
-				table=targetRel.nextSetBit(table+1)) {
-			BitSet tableSet = new BitSet();
-			tableSet.set(table);
-			double cost = relCost.get(tableSet);
-			LeafPlan leafPlan = new LeafPlan(queryInfo, table, cost);
-			bestPlan.put(tableSet, leafPlan);
-		}
-		// Iterate over join relations
-		for (int k=2; k<=cardinality; ++k) {
-			for (BitSet rel : relsByCard.get(k)) {
-				// Check if this relation is relevant
-				if (RelUtil.isSubset(rel, targetRel)) {
-					for (BitSet subRel1 : relToSubsets.get(rel)) {
-						BitSet subRel2 = new BitSet();
-						subRel2.or(rel);
-						subRel2.andNot(subRel1);
-						if (!subRel1.isEmpty() && !subRel2.isEmpty()) {
-							/*
-							System.out.println("resultRel: \t" + rel.toString());
-							System.out.println("SubRel1: \t" + subRel1.toString());
-							System.out.println("SubRel2: \t" + subRel2.toString());
-							*/
-							double cost1 = bestPlan.get(subRel1).cost;
-							double cost2 = bestPlan.get(subRel2).cost;
-							double oldCost = bestPlan.containsKey(rel)?
-									bestPlan.get(rel).cost:
-										Double.POSITIVE_INFINITY;
-							// We do not count the cost of writing out final result
-							double newCost = cost1 + cost2 + 
-									(k == cardinality && ignoreTarget? 
-											0:relCost.get(rel));
-							if (newCost <= oldCost) {
-								ProbePlan leftPlan = bestPlan.get(subRel1);
-								ProbePlan rightPlan = bestPlan.get(subRel2);
-								CompositePlan newPlan = 
-										new CompositePlan(
-										leftPlan, rightPlan, newCost);
-								bestPlan.put(rel, newPlan);
-							}
+	 * @return				optimal plans and completion cost bounds
+	 * @throws Exception
+	 */
+	public BoundsTable planBounds(long targetRel, double[] lowerCost, 
+			double[] upperCost, boolean ignoreTarget) throws Exception {
+		BoundsTable bounds = new BoundsTable(
+				new PlanTable(this, targetRel, ignoreTarget),
+				new PlanTable(this, targetRel, ignoreTarget));
+		// Iterate over relations in cardinality order
+		int cardinality = RelUtil.cardinality(targetRel);
+		for (int k=1; k<=cardinality; ++k) {
+			int start = levelStart[k];
+			int end = levelStart[k+1];
+			// Relations in the same level can be planned independently
+			if (end - start >= parallelThreshold) {
+				forkJoinPool.invoke(new PlanTask(this, bounds, 
+						lowerCost, upperCost, null, start, end));
+			} else {
+				planRangeBounds(bounds, lowerCost, 
+						upperCost, null, start, end);
+			}
+		}
+		completionBounds(bounds, lowerCost);
+		return bounds;
+	}
+	/**
+	 * Calculates best plans according to lower and upper cost
+	 * bounds for a range of relations, assuming that best plans
+	 * for all their sub-relations are available. Only relations
+	 * that are subsets of the target are planned.
+	 * 
+	 * @param bounds		stores best plans found so far
+	 * @param lowerCost		lower cost bound for each relation ordinal
+	 * @param upperCost		upper cost bound for each relation ordinal
+	 * @param relIndices	relation ordinals or null (range of ordinals)
+	 * @param start			first position in range to plan
+	 * @param end			position after last position to plan
+	 */
+	void planRangeBounds(BoundsTable bounds, double[] lowerCost, 
+			double[] upperCost, int[] relIndices, int start, int end) {
+		long targetRel = bounds.lower.targetRel;
+		for (int pos=start; pos<end; ++pos) {
+			int relIndex = relIndices == null ? pos : relIndices[pos];
+			// Check if this relation is relevant
+			if (RelUtil.isSubset(rels[relIndex], targetRel)) {
+				planRelBounds(bounds, relIndex, lowerCost, upperCost);
+			}
+		}
+	}
+	/**
+	 * Updates plans for lower and upper cost bounds after the cost
+	 * of some relations has changed (analogous to re-planning with
+	 * a single cost value per relation) and re-calculates lower
+	 * bounds on completion cost. Relations are pruned based on
+	 * the cost ceiling and on the completion cost bounds stored
+	 * in the given table (i.e., the bounds calculated during the
+	 * last invocation, unless modified by the caller). Pruning
+	 * is sound as long as the ceiling is an upper bound on the
+	 * optimal plan cost and completion cost bounds are lower
+	 * bounds. Pruned relations are assigned infinite cost and
+	 * therefore cannot be part of the optimal plans.
+	 * 
+	 * @param bounds		plans generated for previous relation cost
+	 * @param lowerCost		new lower cost bound for each relation ordinal
+	 * @param upperCost		new upper cost bound for each relation ordinal
+	 * @param changedRels	relations for which one of the bounds changed
+	 */
+	public void replanBounds(BoundsTable bounds, double[] lowerCost, 
+			double[] upperCost, Set<Long> changedRels) {
+		long targetRel = bounds.lower.targetRel;
+		double[] lowerBest = bounds.lower.cost;
+		double[] upperBest = bounds.upper.cost;
+		// Collect ordinals of relations to update
+		BitSet toUpdate = new BitSet();
+		for (long rel : changedRels) {
+			if (RelUtil.isSubset(rel, targetRel)) {
+				toUpdate.set(index(rel));
+			}
+		}
+		// Update relations level by level (supersets are in higher levels)
+		int cardinality = RelUtil.cardinality(targetRel);
+		for (int k=1; k<=cardinality; ++k) {
+			int start = levelStart[k];
+			int end = levelStart[k+1];
+			int nrUpdates = toUpdate.get(start, end).cardinality();
+			if (nrUpdates == 0) {
+				continue;
+			}
+			// Collect relations to update in this level with old bounds
+			int[] relIndices = new int[nrUpdates];
+			double[] oldLower = new double[nrUpdates];
+			double[] oldUpper = new double[nrUpdates];
+			int pos = 0;
+			for (int relIndex=toUpdate.nextSetBit(start); 
+					relIndex>=0 && relIndex<end; 
+					relIndex=toUpdate.nextSetBit(relIndex+1)) {
+				relIndices[pos] = relIndex;
+				oldLower[pos] = lowerBest[relIndex];
+				oldUpper[pos] = upperBest[relIndex];
+				++pos;
+			}
+			// Relations in the same level can be planned independently
+			if (nrUpdates >= parallelThreshold) {
+				forkJoinPool.invoke(new PlanTask(this, bounds, lowerCost, 
+						upperCost, relIndices, 0, nrUpdates));
+			} else {
+				planRangeBounds(bounds, lowerCost, 
+						upperCost, relIndices, 0, nrUpdates);
+			}
+			// Propagate cost changes to superset relations
+			for (pos=0; pos<nrUpdates; ++pos) {
+				int relIndex = relIndices[pos];
+				if (Double.compare(oldLower[pos], lowerBest[relIndex]) != 0 ||
+						Double.compare(oldUpper[pos], upperBest[relIndex]) != 0) {
+					for (int supset=supsetStart[relIndex]; 
+							supset<supsetStart[relIndex+1]; ++supset) {
+						int supIndex = supsets[supset];
+						if (RelUtil.isSubset(rels[supIndex], targetRel)) {
+							toUpdate.set(supIndex);
 						}
 					}
 				}
 			}
-		} // for k
-		// Return best plan for entire relation
-		return bestPlan;
+		}
+		completionBounds(bounds, lowerCost);
+	}
+	/**
+	 * Calculates the best plans for one relation according to
+	 * lower and to upper cost bounds, assuming that best plans
+	 * for all its sub-relations are available. The relation is
+	 * pruned (i.e., assigned infinite cost for both bounds) if
+	 * its completion cost bound is infinite or if the lower bound
+	 * on the cost of any plan using it exceeds the cost ceiling.
+	 * Relations that are pruned before considering any splits
+	 * are skipped entirely.
+	 * 
+	 * @param bounds		stores best plans found so far
+	 * @param relIndex		ordinal of relation to plan
+	 * @param lowerCost		lower cost bound for each relation ordinal
+	 * @param upperCost		upper cost bound for each relation ordinal
+	 */
+	void planRelBounds(BoundsTable bounds, int relIndex, 
+			double[] lowerCost, double[] upperCost) {
+		PlanTable lower = bounds.lower;
+		PlanTable upper = bounds.upper;
+		double[] lowerBest = lower.cost;
+		double[] upperBest = upper.cost;
+		double completionCostLB = bounds.completionCostLB[relIndex];
+		// Base tables are read directly
+		if (relIndex < levelStart[2]) {
+			lowerBest[relIndex] = lowerCost[relIndex];
+			upperBest[relIndex] = upperCost[relIndex];
+			lower.operandCost[relIndex] = 0;
+			upper.operandCost[relIndex] = 0;
+			return;
+		}
+		// We do not count the cost of writing out final result
+		boolean isTarget = rels[relIndex] == lower.targetRel && 
+				lower.ignoreTarget;
+		double thisLower = isTarget ? 0 : lowerCost[relIndex];
+		double thisUpper = isTarget ? 0 : upperCost[relIndex];
+		lower.bestLeft[relIndex] = -1;
+		lower.bestRight[relIndex] = -1;
+		upper.bestLeft[relIndex] = -1;
+		upper.bestRight[relIndex] = -1;
+		// Skip relations that cannot be part of an optimal plan
+		if (completionCostLB == Double.POSITIVE_INFINITY ||
+				thisLower + completionCostLB > bounds.costCeiling) {
+			pruneBounds(bounds, relIndex);
+			return;
+		}
+		// Find best splits for both bounds in one pass
+		double lowerOperandCost = Double.POSITIVE_INFINITY;
+		double upperOperandCost = Double.POSITIVE_INFINITY;
+		for (int split=splitStart[relIndex]; 
+				split<splitStart[relIndex+1]; ++split) {
+			int left = splitLeft[split];
+			int right = splitRight[split];
+			double newLower = lowerBest[left] + lowerBest[right];
+			// Splits using pruned operands are skipped
+			if (newLower == Double.POSITIVE_INFINITY) {
+				continue;
+			}
+			if (newLower <= lowerOperandCost) {
+				lowerOperandCost = newLower;
+				lower.bestLeft[relIndex] = left;
+				lower.bestRight[relIndex] = right;
+			}
+			double newUpper = upperBest[left] + upperBest[right];
+			if (newUpper <= upperOperandCost && 
+					newUpper != Double.POSITIVE_INFINITY) {
+				upperOperandCost = newUpper;
+				upper.bestLeft[relIndex] = left;
+				upper.bestRight[relIndex] = right;
+			}
+		}
+		// Prune relation if all plans exceed the cost ceiling
+		if (lowerOperandCost + thisLower + 
+				completionCostLB > bounds.costCeiling) {
+			pruneBounds(bounds, relIndex);
+			return;
+		}
+		lower.operandCost[relIndex] = lowerOperandCost;
+		upper.operandCost[relIndex] = upperOperandCost;
+		lowerBest[relIndex] = lowerOperandCost + thisLower;
+		upperBest[relIndex] = upperOperandCost + thisUpper;
+	}
+	/**
+	 * Marks a relation as pruned by assigning infinite cost
+	 * for lower and upper bounds (and no plan).
+	 * 
+	 * @param bounds	stores best plans found so far
+	 * @param relIndex	ordinal of relation to prune
+	 */
+	void pruneBounds(BoundsTable bounds, int relIndex) {
+		for (PlanTable planTable : new PlanTable[] {
+				bounds.lower, bounds.upper}) {
+			planTable.cost[relIndex] = Double.POSITIVE_INFINITY;
+			planTable.operandCost[relIndex] = Double.POSITIVE_INFINITY;
+			planTable.bestLeft[relIndex] = -1;
+			planTable.bestRight[relIndex] = -1;
+		}
+	}
+	/**
+	 * Calculates lower bounds on the cost of completing a plan
+	 * for the target relation from each relation (top-down),
+	 * based on lower bounds on generation cost. The bound is
+	 * only calculated for relations between base tables and
+	 * the target relation (it is zero for both).
+	 * 
+	 * @param bounds		contains lower bounds on generation cost
+	 * @param lowerCost		lower cost bound for each relation ordinal
+	 */
+	void completionBounds(BoundsTable bounds, double[] lowerCost) {
+		long targetRel = bounds.lower.targetRel;
+		double[] generationCostLB = bounds.lower.cost;
+		double[] completionCostLB = bounds.completionCostLB;
+		int end = levelStart[RelUtil.cardinality(targetRel)];
+		for (int relIndex=end-1; relIndex>=levelStart[2]; --relIndex) {
+			if (!RelUtil.isSubset(rels[relIndex], targetRel)) {
+				continue;
+			}
+			double bestCost = Double.POSITIVE_INFINITY;
+			// Pruned relations remain pruned
+			if (generationCostLB[relIndex] == Double.POSITIVE_INFINITY) {
+				completionCostLB[relIndex] = bestCost;
+				continue;
+			}
+			// Over valid superset relations
+			for (int supset=supsetStart[relIndex]; 
+					supset<supsetStart[relIndex+1]; ++supset) {
+				int supIndex = supsets[supset];
+				long supRel = rels[supIndex];
+				if (!RelUtil.isSubset(supRel, targetRel)) {
+					continue;
+				}
+				double newCost = completionCostLB[supIndex] + 
+						(supRel != targetRel ? lowerCost[supIndex] : 0) + 
+						generationCostLB[supsetComplements[supset]];
+				bestCost = Math.min(bestCost, newCost);
+			}
+			completionCostLB[relIndex] = bestCost;
+		}
 	}
 }
@@ -2,11 +2,16 @@ package common;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-import java.util.BitSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
 import SQLtools.QueryInfo;
+import common.plans.ProbePlan;
 
 class PlanUtilTest {
 
@@ -36,84 +41,164 @@ class PlanUtilTest {
 			 */
 			PlanUtil planUtil = new PlanUtil(queryInfo);
 			// Create singleton relations
-			BitSet ctRel = new BitSet();
-			BitSet mcRel = new BitSet();
-			BitSet tRel = new BitSet();
-			BitSet mi_idxRel = new BitSet();
-			BitSet itRel = new BitSet();
-			ctRel.set(ctID);
-			mcRel.set(mcID);
-			tRel.set(tID);
-			mi_idxRel.set(mi_idxID);
-			itRel.set(itID);
+			long ctRel = RelUtil.singleton(ctID);
+			long mcRel = RelUtil.singleton(mcID);
+			long tRel = RelUtil.singleton(tID);
+			long mi_idxRel = RelUtil.singleton(mi_idxID);
+			long itRel = RelUtil.singleton(itID);
 			assertTrue(planUtil.allRels.contains(ctRel));
 			assertTrue(planUtil.allRels.contains(mcRel));
 			assertTrue(planUtil.allRels.contains(tRel));
 			assertTrue(planUtil.allRels.contains(mi_idxRel));
 			assertTrue(planUtil.allRels.contains(itRel));
 			// Create binary relations
-			BitSet ctMcRel = new BitSet();
-			BitSet tMcRel = new BitSet();
-			BitSet tMi_idxRel = new BitSet();
-			BitSet mcMi_idxRel = new BitSet();
-			BitSet itMi_idxRel = new BitSet();
-			ctMcRel.or(ctRel);
-			ctMcRel.or(mcRel);
-			tMcRel.or(tRel);
-			tMcRel.or(mcRel);
-			tMi_idxRel.or(tRel);
-			tMi_idxRel.or(mi_idxRel);
-			mcMi_idxRel.or(mcRel);
-			mcMi_idxRel.or(mi_idxRel);
-			itMi_idxRel.or(itRel);
-			itMi_idxRel.or(mi_idxRel);
+			long ctMcRel = ctRel | mcRel;
+			long tMcRel = tRel | mcRel;
+			long tMi_idxRel = tRel | mi_idxRel;
+			long mcMi_idxRel = mcRel | mi_idxRel;
+			long itMi_idxRel = itRel | mi_idxRel;
 			assertTrue(planUtil.allRels.contains(ctMcRel));
 			assertTrue(planUtil.allRels.contains(tMcRel));
 			assertTrue(planUtil.allRels.contains(tMi_idxRel));
 			assertTrue(planUtil.allRels.contains(mcMi_idxRel));
 			assertTrue(planUtil.allRels.contains(itMi_idxRel));
 			// Generate relations with three tables
-			BitSet ctMcTRel = new BitSet();
-			BitSet ctMcMi_idxRel = new BitSet();
-			BitSet tMcMi_idxRel = new BitSet();
-			BitSet tMi_idxItRel = new BitSet();
-			BitSet mcMi_idxItRel = new BitSet();
-			ctMcTRel.or(ctMcRel);
-			ctMcTRel.or(tRel);
-			ctMcMi_idxRel.or(ctMcRel);
-			ctMcMi_idxRel.or(mi_idxRel);
-			tMcMi_idxRel.or(tMcRel);
-			tMcMi_idxRel.or(mi_idxRel);
-			tMi_idxItRel.or(tMi_idxRel);
-			tMi_idxItRel.or(itRel);
-			mcMi_idxItRel.or(mcMi_idxRel);
-			mcMi_idxItRel.or(itRel);
+			long ctMcTRel = ctMcRel | tRel;
+			long ctMcMi_idxRel = ctMcRel | mi_idxRel;
+			long tMcMi_idxRel = tMcRel | mi_idxRel;
+			long tMi_idxItRel = tMi_idxRel | itRel;
+			long mcMi_idxItRel = mcMi_idxRel | itRel;
 			assertTrue(planUtil.allRels.contains(ctMcTRel));
 			assertTrue(planUtil.allRels.contains(ctMcMi_idxRel));
 			assertTrue(planUtil.allRels.contains(tMcMi_idxRel));
 			assertTrue(planUtil.allRels.contains(tMi_idxItRel));
 			assertTrue(planUtil.allRels.contains(mcMi_idxItRel));
 			// Generate relations with four tables
-			BitSet ctMcTMi_idxRel = new BitSet();
-			BitSet ctMcMi_idxItRel = new BitSet();
-			BitSet tMcMi_idxItRel = new BitSet();
-			ctMcTMi_idxRel.or(ctMcTRel);
-			ctMcTMi_idxRel.or(mi_idxRel);
-			ctMcMi_idxItRel.or(ctMcMi_idxRel);
-			ctMcMi_idxItRel.or(itRel);
-			tMcMi_idxItRel.or(tMcMi_idxRel);
-			tMcMi_idxItRel.or(itRel);
+			long ctMcTMi_idxRel = ctMcTRel | mi_idxRel;
+			long ctMcMi_idxItRel = ctMcMi_idxRel | itRel;
+			long tMcMi_idxItRel = tMcMi_idxRel | itRel;
 			assertTrue(planUtil.allRels.contains(ctMcTMi_idxRel));
 			assertTrue(planUtil.allRels.contains(ctMcMi_idxItRel));
 			assertTrue(planUtil.allRels.contains(tMcMi_idxItRel));
 			// Generate one relation with all tables
-			BitSet allTablesRel = new BitSet();
-			allTablesRel.or(tMcMi_idxItRel);
-			allTablesRel.or(ctRel);
+			long allTablesRel = tMcMi_idxItRel | ctRel;
 			assertTrue(planUtil.allRels.contains(allTablesRel));
 			// Verify the number of generated relations
 			assertEquals(5, planUtil.relsByCard.get(1).size());
 			assertEquals(19, planUtil.allRels.size());
+			// Compare with exhaustive enumeration of relations
+			Set<Long> exhaustiveRels = PlanUtil.generateRels(queryInfo);
+			Map<Long, Set<Long>> exhaustiveSubsets = new HashMap<Long, Set<Long>>();
+			Map<Long, Set<Long>> exhaustiveSupsets = new HashMap<Long, Set<Long>>();
+			PlanUtil.decomposeRels(exhaustiveRels, 
+					exhaustiveSubsets, exhaustiveSupsets);
+			assertEquals(exhaustiveRels, planUtil.allRels);
+			assertEquals(exhaustiveSubsets, planUtil.relToSubsets);
+			assertEquals(exhaustiveSupsets, planUtil.relToSupsets);
+			// Verify plans generated with unit cost per relation
+			double[] unitCost = new double[planUtil.rels.length];
+			Arrays.fill(unitCost, 1);
+			PlanTable planTable = planUtil.plan(
+					queryInfo.allTables, unitCost, true);
+			assertEquals(8, planTable.cost(queryInfo.allTables), 1E-10);
+			assertEquals(5, planTable.cost(ctMcTRel), 1E-10);
+			ProbePlan plan = planTable.plan(queryInfo.allTables);
+			assertEquals(queryInfo.allTables, plan.resultRel);
+			assertTrue(plan.findRel(ctRel));
+			assertNull(planUtil.plan(ctMcTRel, 
+					unitCost, false).plan(itRel));
+			// Incremental re-planning must match planning from scratch
+			double[] newCost = unitCost.clone();
+			newCost[planUtil.index(tMcRel)] = 10;
+			newCost[planUtil.index(itRel)] = 0;
+			Set<Long> changedRels = new HashSet<Long>();
+			changedRels.add(tMcRel);
+			changedRels.add(itRel);
+			planUtil.replan(planTable, newCost, changedRels);
+			PlanTable newTable = planUtil.plan(
+					queryInfo.allTables, newCost, true);
+			assertArrayEquals(newTable.cost, planTable.cost, 1E-10);
+			assertArrayEquals(newTable.bestLeft, planTable.bestLeft);
+			// Planning all tables yields best plan rooted at each relation
+			PlanTable allPlans = planUtil.plan(
+					queryInfo.allTables, newCost, false);
+			for (long rel : planUtil.allRels) {
+				PlanTable relPlans = planUtil.plan(rel, newCost, false);
+				assertEquals(relPlans.cost(rel), allPlans.cost(rel), 1E-10);
+				double relCost = newCost[planUtil.index(rel)];
+				assertEquals(allPlans.cost(rel) - relCost, 
+						allPlans.operandCost(rel), 1E-10);
+			}
+			// Parallel planning must match sequential planning
+			planUtil.parallelThreshold = 1;
+			planUtil.parallelGrain = 1;
+			PlanTable parallelPlans = planUtil.plan(
+					queryInfo.allTables, newCost, false);
+			assertArrayEquals(allPlans.cost, parallelPlans.cost, 1E-10);
+			assertArrayEquals(allPlans.bestLeft, parallelPlans.bestLeft);
+			// Planning with cost bounds must match separate planning
+			BoundsTable bounds = planUtil.planBounds(
+					queryInfo.allTables, unitCost, newCost, true);
+			assertArrayEquals(planUtil.plan(queryInfo.allTables,
+					unitCost, true).cost, bounds.lower.cost, 1E-10);
+			assertArrayEquals(newTable.cost, bounds.upper.cost, 1E-10);
+			// Completion cost of t-mc adds up to cost of optimal plan
+			assertEquals(0, bounds.completionCostLB[
+					planUtil.index(allTablesRel)], 1E-10);
+			assertEquals(5, bounds.completionCostLB[
+					planUtil.index(tMcRel)], 1E-10);
+			assertEquals(8, bounds.lowerCostBound(tMcRel), 1E-10);
+			planUtil.replanBounds(bounds, newCost, unitCost, changedRels);
+			BoundsTable newBounds = planUtil.planBounds(
+					queryInfo.allTables, newCost, unitCost, true);
+			assertArrayEquals(newBounds.lower.cost, bounds.lower.cost, 1E-10);
+			assertArrayEquals(newBounds.upper.cost, bounds.upper.cost, 1E-10);
+			assertArrayEquals(newBounds.completionCostLB,
+					bounds.completionCostLB, 1E-10);
+			// Pruning with optimal cost as ceiling keeps optimal plan
+			BoundsTable pruned = planUtil.planBounds(
+					queryInfo.allTables, newCost, newCost, true);
+			double optimalCost = pruned.upper.cost(queryInfo.allTables);
+			pruned.costCeiling = optimalCost;
+			planUtil.replanBounds(pruned, newCost, newCost, planUtil.allRels);
+			assertEquals(optimalCost,
+					pruned.upper.cost(queryInfo.allTables), 1E-10);
+			assertEquals(Double.POSITIVE_INFINITY,
+					pruned.lower.cost(tMcRel), 1E-10);
+			assertNull(pruned.upper.plan(tMcRel));
+			assertNotNull(pruned.upper.plan(queryInfo.allTables));
+			// Parallel bounds planning must match sequential planning
+			BoundsTable parallelBounds = planUtil.planBounds(
+					queryInfo.allTables, unitCost, newCost, true);
+			planUtil.replanBounds(parallelBounds, 
+					newCost, unitCost, changedRels);
+			planUtil.parallelThreshold = Integer.MAX_VALUE;
+			BoundsTable sequentialBounds = planUtil.planBounds(
+					queryInfo.allTables, unitCost, newCost, true);
+			planUtil.replanBounds(sequentialBounds, 
+					newCost, unitCost, changedRels);
+			assertArrayEquals(sequentialBounds.lower.cost, 
+					parallelBounds.lower.cost, 1E-10);
+			assertArrayEquals(sequentialBounds.upper.cost, 
+					parallelBounds.upper.cost, 1E-10);
+			assertArrayEquals(sequentialBounds.lower.bestLeft, 
+					parallelBounds.lower.bestLeft);
+			assertArrayEquals(sequentialBounds.upper.bestLeft, 
+					parallelBounds.upper.bestLeft);
+			assertArrayEquals(sequentialBounds.completionCostLB,
+					parallelBounds.completionCostLB, 1E-10);
+			// Bounded plan space keeps small relations and intervals
+			PlanUtil boundedUtil = new PlanUtil(queryInfo, 2);
+			for (long rel : planUtil.relsByCard.get(2)) {
+				assertEquals(planUtil.relToSubsets.get(rel), 
+						boundedUtil.relToSubsets.get(rel));
+			}
+			assertTrue(boundedUtil.allRels.contains(queryInfo.allTables));
+			assertTrue(planUtil.allRels.containsAll(boundedUtil.allRels));
+			double[] boundedCost = new double[boundedUtil.rels.length];
+			Arrays.fill(boundedCost, 1);
+			assertEquals(8, boundedUtil.plan(queryInfo.allTables, 
+					boundedCost, true).cost(queryInfo.allTables), 1E-10);
 		}
 	}
 
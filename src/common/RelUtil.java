@@ -1,45 +1,168 @@
 package common;
 
-import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 /**
- * Contains helper methods to handle relations.
+ * Contains helper methods to handle relations. Relations
+ * are represented as long values where the i-th bit is
+ * set iff the table with ID i is part of the relation.
  * 
  * @author immanueltrummer
  *
  */
 public class RelUtil {
 	/**
-	 * Returns true iff the first BitSet is a subset
-	 * of the second BitSet.
+	 * Maximal number of tables that can be represented
+	 * in a relation (i.e., number of bits in a long).
+	 */
+	public static final int MAX_TABLES = 64;
+	/**
+	 * Returns true iff the first relation is a subset
+	 * of the second relation.
 	 * 
-	 * @param subset		a potential subset		
-	 * @param set		a BitSet
+	 * @param subset		a potential subset
+	 * @param set		a relation
 	 * @return			true iff it is indeed a subset
 	 */
-	public static boolean isSubset(BitSet subset, BitSet set) {
-		BitSet temp = new BitSet();
-		temp.or(subset);
-		temp.andNot(set);
-		return temp.isEmpty();
+	public static boolean isSubset(long subset, long set) {
+		return (subset & ~set) == 0;
+	}
+	/**
+	 * Returns the number of tables in the given relation.
+	 * 
+	 * @param rel	a relation
+	 * @return		number of tables in relation
+	 */
+	public static int cardinality(long rel) {
+		return Long.bitCount(rel);
+	}
+	/**
+	 * Returns a relation containing only the given table.
+	 * 
+	 * @param table	single table in relation
+	 * @return		a singleton relation
+	 */
+	public static long singleton(int table) {
+		return 1L << table;
+	}
+	/**
+	 * Returns true iff the given table is part of the relation.
+	 * 
+	 * @param rel	a relation
+	 * @param table	a table ID
+	 * @return		true iff the relation contains the table
+	 */
+	public static boolean contains(long rel, int table) {
+		return (rel & (1L << table)) != 0;
+	}
+	/**
+	 * Returns the relation containing the first n tables.
+	 * 
+	 * @param nrTables	number of tables in relation
+	 * @return			relation with tables 0 to n-1
+	 */
+	public static long firstTables(int nrTables) {
+		return nrTables >= MAX_TABLES ? -1L : (1L << nrTables) - 1;
+	}
+	/**
+	 * Returns the next table ID contained in the relation,
+	 * starting from (and including) the given table, or -1
+	 * if no such table exists. Allows to iterate over the
+	 * tables in a relation in the same style as BitSets.
+	 * 
+	 * @param rel	a relation
+	 * @param from	first table ID to consider
+	 * @return		next table ID in relation or -1
+	 */
+	public static int nextTable(long rel, int from) {
+		if (from >= MAX_TABLES) {
+			return -1;
+		}
+		long remaining = rel & (-1L << from);
+		return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+	}
+	/**
+	 * Returns all non-empty subsets of the given relation that
+	 * contain at most the given number of tables. The number
+	 * of generated subsets is proportional to the result size
+	 * (i.e., we do not iterate over all subsets if the number
+	 * of tables is bounded).
+	 * 
+	 * @param rel		a relation
+	 * @param maxSize	maximal number of tables per subset
+	 * @return			list of subsets with bounded size
+	 */
+	public static List<Long> subsets(long rel, int maxSize) {
+		List<Long> subsets = new ArrayList<Long>();
+		if (cardinality(rel) <= maxSize) {
+			for (long subset=rel; subset!=0; subset=(subset-1) & rel) {
+				subsets.add(subset);
+			}
+		} else if (maxSize > 0) {
+			addSubsets(rel, 0, maxSize, subsets);
+		}
+		return subsets;
+	}
+	/**
+	 * Recursively adds subsets with bounded size that extend
+	 * a given subset by tables from a given relation (tables
+	 * are added in ascending order to avoid duplicates).
+	 * 
+	 * @param remaining	tables that can still be added
+	 * @param subset	subset to extend
+	 * @param maxSize	maximal number of tables per subset
+	 * @param subsets	collects generated subsets
+	 */
+	static void addSubsets(long remaining, long subset, 
+			int maxSize, List<Long> subsets) {
+		for (long tables=remaining; tables!=0; ) {
+			long table = Long.lowestOneBit(tables);
+			tables &= ~table;
+			long newSubset = subset | table;
+			subsets.add(newSubset);
+			if (cardinality(newSubset) < maxSize) {
+				addSubsets(tables, newSubset, maxSize, subsets);
+			}
+		}
+	}
+	/**
+	 * Returns a string representation of the relation that
+	 * lists the IDs of all contained tables.
+	 * 
+	 * @param rel	a relation
+	 * @return		string listing table IDs
+	 */
+	public static String toString(long rel) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("{");
+		boolean first = true;
+		for (int table=nextTable(rel, 0); table>=0;
+				table=nextTable(rel, table+1)) {
+			builder.append(first?"":", ");
+			builder.append(table);
+			first = false;
+		}
+		builder.append("}");
+		return builder.toString();
 	}
 	/**
-	 * Transforms a relation represented as BitSet into a
-	 * set containing the corresponding table aliases.
+	 * Transforms a relation into a set containing
+	 * the corresponding table aliases.
 	 * 
-	 * @param rel				relation in BitSet representation
+	 * @param rel				relation in long representation
 	 * @param tableIDtoAlias		maps table IDs to table aliases
 	 * @return					a set of table aliases
 	 */
-	public static Set<String> aliasSet(BitSet rel, 
+	public static Set<String> aliasSet(long rel,
 			Map<Integer, String> tableIDtoAlias) {
-		// Iterate over table IDs in BitSet
+		// Iterate over table IDs in relation
 		Set<String> aliasSet = new TreeSet<String>();
-		for (int table=rel.nextSetBit(0); table>=0; 
-				table=rel.nextSetBit(table+1)) {
+		for (int table=nextTable(rel, 0); table>=0;
+				table=nextTable(rel, table+1)) {
 			String alias = tableIDtoAlias.get(table);
 			aliasSet.add(alias);
 		}
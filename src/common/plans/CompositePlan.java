@@ -1,7 +1,5 @@
 package common.plans;
 
-import java.util.BitSet;
-
 /**
  * Represents a plan joining the result of
  * two other plans.
@@ -37,15 +35,12 @@ public class CompositePlan extends ProbePlan {
 	 * @param plan2	generates second join operand
 	 * @return
 	 */
-	static BitSet joinRel(ProbePlan plan1, ProbePlan plan2) {
-		BitSet rel = new BitSet();
-		rel.or(plan1.resultRel);
-		rel.or(plan2.resultRel);
-		return rel;
+	static long joinRel(ProbePlan plan1, ProbePlan plan2) {
+		return plan1.resultRel | plan2.resultRel;
 	}
 	@Override
-	public boolean findRel(BitSet rel) {
-		if (this.resultRel.equals(rel)) {
+	public boolean findRel(long rel) {
+		if (this.resultRel == rel) {
 			return true;
 		} else {
 			return leftPlan.findRel(rel) ||
@@ -1,8 +1,7 @@
 package common.plans;
 
-import java.util.BitSet;
-
 import SQLtools.QueryInfo;
+import common.RelUtil;
 
 /**
  * Represents access to a single base table.
@@ -22,20 +21,9 @@ public class LeafPlan extends ProbePlan {
 	 * @param cost			tale access cost
 	 */
 	public LeafPlan(QueryInfo queryInfo, int table, double cost) {
-		super(singletonRel(table), cost, nrColumns(queryInfo, table));
+		super(RelUtil.singleton(table), cost, nrColumns(queryInfo, table));
 		this.table = table;
 	}
-	/**
-	 * Returns a BitSet representing a singleton relation.
-	 * 
-	 * @param table	single table in relation
-	 * @return		a BitSet representing singleton relation
-	 */
-	static BitSet singletonRel(int table) {
-		BitSet rel = new BitSet();
-		rel.set(table);
-		return rel;
-	}
 	/**
 	 * Extracts number of columns selected for given
 	 * table from query info object.
@@ -49,7 +37,7 @@ public class LeafPlan extends ProbePlan {
 		return queryInfo.aliasToPredColumns.get(alias).size();
 	}
 	@Override
-	public boolean findRel(BitSet rel) {
-		return this.resultRel.equals(rel);
+	public boolean findRel(long rel) {
+		return this.resultRel == rel;
 	}
 }
@@ -1,7 +1,5 @@
 package common.plans;
 
-import java.util.BitSet;
-
 /**
  * Common super-class of all plans whose
  * purpose is to probe the cardinality of
@@ -14,7 +12,7 @@ public abstract class ProbePlan {
 	/**
 	 * Result relation of this plan.
 	 */
-	public final BitSet resultRel;
+	public final long resultRel;
 	/**
 	 * Plan execution cost.
 	 */
@@ -29,7 +27,7 @@ public abstract class ProbePlan {
 	 * @param resultRel	relation generated by plan
 	 * @param cost		plan execution cost
 	 */
-	public ProbePlan(BitSet resultRel, double cost, int nrColumns) {
+	public ProbePlan(long resultRel, double cost, int nrColumns) {
 		this.resultRel = resultRel;
 		this.cost = cost;
 		this.nrColumns = nrColumns;
@@ -42,5 +40,5 @@ public abstract class ProbePlan {
 	 * @param rel	intermediate result relation
 	 * @return		true iff this sub-tree contains the given result
 	 */
-	public abstract boolean findRel(BitSet rel);
+	public abstract boolean findRel(long rel);
 }
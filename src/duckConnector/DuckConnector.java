@@ -0,0 +1,337 @@
+package duckConnector;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.sql.rowset.CachedRowSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import SQLtools.QueryInfo;
+import common.RelUtil;
+import pgConnector.AnalyzeInfo;
+import pgConnector.KeyCatalog;
+import pgConnector.PgConnector;
+import pgConnector.ProbeBackend;
+
+/**
+ * Issues queries to an embedded DuckDB database stored in a
+ * local file (requires the DuckDB JDBC driver at run time).
+ * Queries are executed one after the other over a single
+ * connection, each query is parallelized by DuckDB.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class DuckConnector implements ProbeBackend {
+	/**
+	 * Path to database file.
+	 */
+	public final String path;
+	/**
+	 * Number of threads used per query (the DuckDB
+	 * default is used if this is not positive).
+	 */
+	public final int nrThreads;
+	/**
+	 * Maximal amount of memory used by DuckDB (e.g., "8GB").
+	 * The DuckDB default is used if this is null.
+	 */
+	public final String memoryLimit;
+	/**
+	 * Connection to embedded database (initialized in
+	 * constructor).
+	 */
+	final Connection connection;
+	/**
+	 * Statement that is currently executing a query (or null).
+	 */
+	volatile Statement activeStatement;
+	/**
+	 * Point in time (in milliseconds since the epoch) at which all
+	 * queries are cancelled (no deadline if this is negative).
+	 */
+	volatile long deadlineMillis = -1;
+	/**
+	 * Cancels queries once they reach their timeout.
+	 */
+	final Timer watchdog = new Timer("query watchdog", true);
+	/**
+	 * Parses explain results in JSON format.
+	 */
+	final ObjectMapper objectMapper = new ObjectMapper();
+	/**
+	 * Retrieves columns of primary key and unique constraints
+	 * (one row per constraint).
+	 */
+	static final String UNIQUE_SQL =
+			"SELECT table_name, array_to_string(constraint_column_names, ',') " +
+			"FROM duckdb_constraints() " +
+			"WHERE constraint_type IN ('PRIMARY KEY', 'UNIQUE');";
+	/**
+	 * Key constraints of current database (read on demand).
+	 */
+	KeyCatalog keyCatalog;
+	/**
+	 * Constructor opens the database file.
+	 * 
+	 * @param path			path to database file
+	 * @param nrThreads		number of threads or non-positive
+	 * @param memoryLimit	memory limit or null
+	 * @throws Exception
+	 */
+	public DuckConnector(String path, int nrThreads,
+			String memoryLimit) throws Exception {
+		this.path = path;
+		this.nrThreads = nrThreads;
+		this.memoryLimit = memoryLimit;
+		this.connection = DriverManager.getConnection("jdbc:duckdb:" + path);
+		Statement statement = connection.createStatement();
+		if (nrThreads > 0) {
+			statement.execute("SET threads = " + nrThreads + ";");
+		}
+		if (memoryLimit != null) {
+			statement.execute("SET memory_limit = '" + memoryLimit + "';");
+		}
+		statement.close();
+	}
+	/**
+	 * Executes a query and returns its result held in memory.
+	 * The query is cancelled once the timeout or the deadline
+	 * (if any) is reached.
+	 */
+	@Override
+	public synchronized ResultSet query(String sql,
+			long timeoutMillis) throws Exception {
+		// Determine time until cancellation
+		long deadline = deadlineMillis;
+		if (deadline >= 0) {
+			long remainingMillis = deadline - System.currentTimeMillis();
+			if (remainingMillis <= 0) {
+				throw new Exception("Query deadline passed");
+			}
+			timeoutMillis = timeoutMillis > 0 ?
+					Math.min(timeoutMillis, remainingMillis) : remainingMillis;
+		}
+		final Statement statement = connection.createStatement();
+		TimerTask cancelTask = null;
+		if (timeoutMillis > 0) {
+			cancelTask = new TimerTask() {
+				@Override
+				public void run() {
+					try {
+						statement.cancel();
+					} catch (Exception e) {
+						System.out.println("Cancellation failed:\t" + e.getMessage());
+					}
+				}
+			};
+			watchdog.schedule(cancelTask, timeoutMillis);
+		}
+		activeStatement = statement;
+		try {
+			ResultSet result = statement.executeQuery(sql);
+			CachedRowSet cachedResult =
+					PgConnector.rowSetFactory().createCachedRowSet();
+			cachedResult.populate(result);
+			result.close();
+			return cachedResult;
+		} finally {
+			if (cancelTask != null) {
+				cancelTask.cancel();
+			}
+			activeStatement = null;
+			statement.close();
+		}
+	}
+	/**
+	 * Explains each query separately (no round trips are needed
+	 * for an embedded database, so the batch size is ignored).
+	 * The estimate for a query is the one of the top-most plan
+	 * node reporting an estimated cardinality.
+	 */
+	@Override
+	public double[] estimateRows(List<String> queries,
+			int batchSize) throws Exception {
+		int nrQueries = queries.size();
+		double[] rows = new double[nrQueries];
+		for (int queryCtr=0; queryCtr<nrQueries; ++queryCtr) {
+			ResultSet result = query("EXPLAIN (FORMAT JSON) " +
+					queries.get(queryCtr), -1);
+			result.next();
+			JsonNode plan = objectMapper.readTree(result.getString(2));
+			rows[queryCtr] = Math.max(1, estimatedRows(plan));
+		}
+		return rows;
+	}
+	/**
+	 * Returns the estimated cardinality of the top-most node in
+	 * the given plan that reports one (or -1 if no node does).
+	 * 
+	 * @param plan	explain result in JSON format
+	 * @return		estimated cardinality or -1
+	 */
+	double estimatedRows(JsonNode plan) {
+		List<JsonNode> nodes = new ArrayList<JsonNode>();
+		nodes.add(plan);
+		for (int nodeCtr=0; nodeCtr<nodes.size(); ++nodeCtr) {
+			JsonNode node = nodes.get(nodeCtr);
+			if (node.isArray()) {
+				for (JsonNode element : node) {
+					nodes.add(element);
+				}
+			} else {
+				JsonNode estimate = node.path("extra_info").path(
+						"Estimated Cardinality");
+				if (!estimate.isMissingNode()) {
+					return estimate.asDouble();
+				}
+				for (JsonNode child : node.path("children")) {
+					nodes.add(child);
+				}
+			}
+		}
+		return -1;
+	}
+	@Override
+	public long countRows(String query, long timeoutMillis) throws Exception {
+		ResultSet result = query("SELECT COUNT(*) FROM (" +
+				query + ") as temp", timeoutMillis);
+		result.next();
+		return result.getLong(1);
+	}
+	/**
+	 * Executes the probe query via explain-analyze (which always
+	 * measures time per operator in DuckDB, buffer usage is not
+	 * reported). DuckDB reports scanned tables by their names,
+	 * so probes whose plan joins several query tables with the
+	 * same name (i.e., the same table under different aliases)
+	 * cannot be analyzed.
+	 */
+	@Override
+	public void analyze(String query, long timeoutMillis, boolean timing,
+			boolean buffers, AnalyzeInfo analyzeInfo) throws Exception {
+		ResultSet result = query("EXPLAIN (ANALYZE, FORMAT JSON) " +
+				query, timeoutMillis);
+		if (!result.next()) {
+			throw new Exception("No result for " + query);
+		}
+		JsonNode profile = objectMapper.readTree(result.getString(2));
+		extractInfoRec(profile, analyzeInfo);
+	}
+	/**
+	 * Adds row counts of limit operators in the given profile
+	 * sub-tree to the analysis result (operators that were not
+	 * executed produce no rows in DuckDB).
+	 * 
+	 * @param node			node of query profile in JSON format
+	 * @param analyzeInfo	analysis result to add row counts to
+	 * @return				relations scanned in node sub-tree
+	 * @throws Exception
+	 */
+	long extractInfoRec(JsonNode node, AnalyzeInfo analyzeInfo) throws Exception {
+		long thisRel = 0;
+		if (node.isArray()) {
+			for (JsonNode element : node) {
+				thisRel |= extractInfoRec(element, analyzeInfo);
+			}
+			return thisRel;
+		}
+		for (JsonNode child : node.path("children")) {
+			thisRel |= extractInfoRec(child, analyzeInfo);
+		}
+		// Check for table scans
+		JsonNode table = node.path("extra_info").path("Table");
+		if (!table.isMissingNode()) {
+			thisRel |= tableRel(analyzeInfo.queryInfo, 
+					analyzeInfo.probeRel, table.asText());
+		}
+		// Extract row count of limit operators
+		if (node.path("operator_type").asText().contains("LIMIT")) {
+			analyzeInfo.relToCard.put(thisRel,
+					node.path("operator_cardinality").asInt());
+		}
+		return thisRel;
+	}
+	/**
+	 * Returns the relation containing the table joined by the
+	 * probe with the given name (the empty relation if no such
+	 * table has that name). Other query tables with the same
+	 * name are not scanned by the probe and are ignored.
+	 * 
+	 * @param queryInfo	meta-data about input query
+	 * @param probeRel	query tables joined by the probe
+	 * @param tableName	name of scanned table
+	 * @return			singleton relation or empty relation
+	 * @throws Exception
+	 */
+	long tableRel(QueryInfo queryInfo, long probeRel, 
+			String tableName) throws Exception {
+		long rel = 0;
+		for (int table=RelUtil.nextTable(probeRel, 0); table>=0; 
+				table=RelUtil.nextTable(probeRel, table+1)) {
+			String alias = queryInfo.tableIDtoAlias.get(table);
+			if (tableName.equalsIgnoreCase(
+					queryInfo.tableAliasToName.get(alias))) {
+				if (rel != 0) {
+					throw new Exception("Cannot attribute scan on " +
+							tableName + " to one query table");
+				}
+				rel = RelUtil.singleton(table);
+			}
+		}
+		return rel;
+	}
+	/**
+	 * Uses the DuckDB hash function, which returns unsigned
+	 * values (null values are assigned to the first slice).
+	 */
+	@Override
+	public String slicePredicate(String column, int nrSlices, int slice) {
+		return "coalesce(hash(" + column + "), 0) % " + 
+				nrSlices + " = " + slice;
+	}
+	@Override
+	public synchronized KeyCatalog keyCatalog() throws Exception {
+		if (keyCatalog == null) {
+			keyCatalog = new KeyCatalog(this, UNIQUE_SQL, null);
+		}
+		return keyCatalog;
+	}
+	/**
+	 * Queries are executed one after the other, so the number
+	 * of concurrent queries cannot be increased.
+	 */
+	@Override
+	public void reserve(int nrConnections) {
+	}
+	@Override
+	public void setDeadline(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+	}
+	@Override
+	public void clearDeadline() {
+		deadlineMillis = -1;
+	}
+	@Override
+	public boolean deadlinePassed() {
+		long deadline = deadlineMillis;
+		return deadline >= 0 && System.currentTimeMillis() >= deadline;
+	}
+	@Override
+	public void closeAll() throws Exception {
+		watchdog.cancel();
+		Statement statement = activeStatement;
+		if (statement != null) {
+			statement.cancel();
+		}
+		connection.close();
+	}
+}
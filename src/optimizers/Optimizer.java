@@ -1,7 +1,7 @@
 package optimizers;
 
 import SQLtools.QueryInfo;
-import pgConnector.PgConnector;
+import pgConnector.ProbeBackend;
 import reference.RefUtil;
 
 /**
@@ -13,9 +13,10 @@ import reference.RefUtil;
  */
 public abstract class Optimizer {
 	/**
-	 * Allows to query the database.
+	 * Allows to query the database (via estimates,
+	 * exact counts, and bounded probes).
 	 */
-	public final PgConnector pgConnector;
+	public final ProbeBackend backend;
 	/**
 	 * Maximum number of milliseconds before timeout.
 	 */
@@ -50,11 +51,11 @@ public abstract class Optimizer {
 	 * Initializes timeout and database connector.
 	 * 
 	 * @param timeoutMillis	number of milliseconds until timeout
-	 * @param pgConnector	connection to the database
+	 * @param backend		connection to the database
 	 */
-	public Optimizer(int timeoutMillis, PgConnector pgConnector) {
+	public Optimizer(int timeoutMillis, ProbeBackend backend) {
 		this.timeoutMillis = timeoutMillis;
-		this.pgConnector = pgConnector;
+		this.backend = backend;
 	}
 	/**
 	 * Find verified-optimal plans for given input query.
@@ -0,0 +1,197 @@
+package optimizers.safe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import SQLtools.PredInfo;
+import SQLtools.QueryInfo;
+import common.RelUtil;
+
+/**
+ * Stores verified cardinality values and proven lower bounds
+ * across optimizer runs. Relations are identified by a canonical
+ * form of the corresponding sub-query (joined tables and applicable
+ * predicates with normalized aliases). Hence, cached values can be
+ * shared between different queries with common sub-queries. Cached
+ * values become invalid if the underlying data changes.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class CardCache implements Serializable {
+	/**
+	 * Compiler-generated ID.
+	 */
+	private static final long serialVersionUID = 5360137713385431982L;
+	/**
+	 * Maps canonical sub-queries to exact cardinality values.
+	 */
+	public final Map<String, Double> exactCards =
+			new HashMap<String, Double>();
+	/**
+	 * Maps canonical sub-queries to lower cardinality bounds.
+	 */
+	public final Map<String, Double> lowerBounds =
+			new HashMap<String, Double>();
+	/**
+	 * Matches equality predicates between two columns.
+	 */
+	static final Pattern EQUI_JOIN = Pattern.compile(
+			"(\\w+\\.\\w+) = (\\w+\\.\\w+)");
+	/**
+	 * Returns a canonical representation of the sub-query joining
+	 * the tables in the given relation: tables are ordered by their
+	 * names and aliases are replaced by the table position in that
+	 * order. Applicable predicates are rewritten accordingly and
+	 * sorted.
+	 * 
+	 * @param queryInfo	meta-data about input query
+	 * @param rel		relation to represent
+	 * @return			canonical sub-query for relation
+	 */
+	public static String relKey(QueryInfo queryInfo, long rel) {
+		// Order tables by name (break ties by alias)
+		List<String> tables = new ArrayList<String>();
+		for (int table=RelUtil.nextTable(rel, 0); table>=0;
+				table=RelUtil.nextTable(rel, table+1)) {
+			String alias = queryInfo.tableIDtoAlias.get(table);
+			String name = queryInfo.tableAliasToName.get(alias);
+			tables.add(name + " AS " + alias);
+		}
+		Collections.sort(tables);
+		// Assign canonical aliases
+		Map<String, String> aliasToCanonical = new HashMap<String, String>();
+		StringBuilder aliasRegex = new StringBuilder();
+		StringBuilder keyBuilder = new StringBuilder();
+		keyBuilder.append("FROM ");
+		int nrTables = tables.size();
+		for (int tableCtr=0; tableCtr<nrTables; ++tableCtr) {
+			String[] nameAndAlias = tables.get(tableCtr).split(" AS ");
+			String alias = nameAndAlias[1];
+			String canonical = "t" + tableCtr;
+			aliasToCanonical.put(alias, canonical);
+			aliasRegex.append(tableCtr>0?"|":"");
+			aliasRegex.append(Pattern.quote(alias));
+			keyBuilder.append(tableCtr>0?", ":"");
+			keyBuilder.append(nameAndAlias[0] + " AS " + canonical);
+		}
+		// Rename aliases in predicates (simultaneously) while
+		// leaving string literals unchanged.
+		Pattern aliasPattern = Pattern.compile("('(?:[^']|'')*')|" + 
+				"(?<![\\w.])(" + aliasRegex.toString() + ")\\.");
+		List<String> preds = new ArrayList<String>();
+		for (PredInfo pred : queryInfo.applicablePreds(rel)) {
+			Matcher matcher = aliasPattern.matcher(pred.sql);
+			StringBuffer predBuffer = new StringBuffer();
+			while (matcher.find()) {
+				String replacement = matcher.group(1) != null ? 
+						matcher.group(1) : 
+						aliasToCanonical.get(matcher.group(2)) + ".";
+				matcher.appendReplacement(predBuffer,
+						Matcher.quoteReplacement(replacement));
+			}
+			matcher.appendTail(predBuffer);
+			// Order operands of equality join predicates
+			String predSQL = predBuffer.toString();
+			Matcher equiMatcher = EQUI_JOIN.matcher(predSQL);
+			if (equiMatcher.matches() && equiMatcher.group(1).compareTo(
+					equiMatcher.group(2)) > 0) {
+				predSQL = equiMatcher.group(2) + " = " + equiMatcher.group(1);
+			}
+			preds.add(predSQL);
+		}
+		Collections.sort(preds);
+		String separator = " WHERE ";
+		for (String pred : preds) {
+			keyBuilder.append(separator);
+			keyBuilder.append(pred);
+			separator = " AND ";
+		}
+		return keyBuilder.toString();
+	}
+	/**
+	 * Initializes relation meta-data from cached values: exact
+	 * values determine lower and upper bounds, lower bounds are
+	 * combined with bounds that are already known.
+	 * 
+	 * @param key	canonical sub-query of relation
+	 * @param info	relation meta-data to update
+	 * @return		true iff cached values were found
+	 */
+	public boolean apply(String key, RelInfo info) {
+		Double exactCard = exactCards.get(key);
+		Double lowerBound = lowerBounds.get(key);
+		if (exactCard != null) {
+			info.lowerCardBound = exactCard;
+			info.upperCardBound = exactCard;
+			info.cardBestGuess = exactCard;
+			return true;
+		} else if (lowerBound != null) {
+			info.lowerCardBound = Math.max(info.lowerCardBound, lowerBound);
+			info.cardBestGuess = Math.max(info.cardBestGuess, lowerBound);
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * Records cardinality information on a relation.
+	 * 
+	 * @param key	canonical sub-query of relation
+	 * @param info	relation meta-data
+	 * @param exact	whether the lower bound is the exact cardinality
+	 */
+	public void record(String key, RelInfo info, boolean exact) {
+		if (exact) {
+			exactCards.put(key, info.lowerCardBound);
+			lowerBounds.remove(key);
+		} else if (info.lowerCardBound > 0 && !exactCards.containsKey(key)) {
+			Double lowerBound = lowerBounds.get(key);
+			if (lowerBound == null || lowerBound < info.lowerCardBound) {
+				lowerBounds.put(key, info.lowerCardBound);
+			}
+		}
+	}
+	/**
+	 * Reads cache from given file or returns an empty
+	 * cache if the file does not exist.
+	 * 
+	 * @param path	path to cache file
+	 * @return		cached cardinality information
+	 * @throws Exception
+	 */
+	public static CardCache load(String path) throws Exception {
+		if (!new File(path).exists()) {
+			return new CardCache();
+		}
+		FileInputStream cacheFileStream = new FileInputStream(path);
+		ObjectInputStream cacheObjStream = new ObjectInputStream(cacheFileStream);
+		CardCache cardCache = (CardCache)cacheObjStream.readObject();
+		cacheObjStream.close();
+		cacheFileStream.close();
+		return cardCache;
+	}
+	/**
+	 * Writes cache to given file.
+	 * 
+	 * @param path	path to cache file
+	 * @throws Exception
+	 */
+	public void save(String path) throws Exception {
+		FileOutputStream cacheFileStream = new FileOutputStream(path);
+		ObjectOutputStream cacheObjStream = new ObjectOutputStream(cacheFileStream);
+		cacheObjStream.writeObject(this);
+		cacheObjStream.close();
+		cacheFileStream.close();
+	}
+}
@@ -0,0 +1,147 @@
+package optimizers.safe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import SQLtools.PredInfo;
+import SQLtools.QueryInfo;
+
+/**
+ * Captures the state of an optimizer run that is in progress
+ * (relation meta-data including status, cardinality limit,
+ * and counters) so that an interrupted run can be resumed.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class Checkpoint implements Serializable {
+	/**
+	 * Compiler-generated ID.
+	 */
+	private static final long serialVersionUID = -6804305893462740174L;
+	/**
+	 * Identifies the optimized query together with its table
+	 * IDs (used to verify that a checkpoint refers to the query
+	 * to optimize and that relations refer to the same tables).
+	 */
+	public final String queryKey;
+	/**
+	 * Maximal number of tables per relation before relations
+	 * are restricted to intervals (determines plan space).
+	 */
+	public final int maxRelSize;
+	/**
+	 * Maps relations to meta-data, including relation status.
+	 */
+	public final Map<Long, RelInfo> relInfos;
+	/**
+	 * Current cardinality limit for probes.
+	 */
+	public final int limit;
+	/**
+	 * Number of probe queries issued so far.
+	 */
+	public final int nrQueries;
+	/**
+	 * Number of milliseconds spent on optimization so far.
+	 */
+	public final long totalMillis;
+	/**
+	 * Initializes checkpoint with given optimizer state.
+	 * 
+	 * @param queryKey		identifies optimized query
+	 * @param maxRelSize	maximal size of unrestricted relations
+	 * @param relInfos		relation meta-data
+	 * @param limit			current cardinality limit
+	 * @param nrQueries		number of queries issued so far
+	 * @param totalMillis	optimization time so far
+	 */
+	public Checkpoint(String queryKey, int maxRelSize,
+			Map<Long, RelInfo> relInfos, int limit,
+			int nrQueries, long totalMillis) {
+		this.queryKey = queryKey;
+		this.maxRelSize = maxRelSize;
+		this.relInfos = relInfos;
+		this.limit = limit;
+		this.nrQueries = nrQueries;
+		this.totalMillis = totalMillis;
+	}
+	/**
+	 * Returns a key identifying the given query and the IDs that
+	 * were assigned to its tables: relation meta-data is stored by
+	 * table IDs, so a checkpoint may only be used if each ID refers
+	 * to the same table alias and name. Queries differing only in
+	 * the order of their predicates have the same key.
+	 * 
+	 * @param queryInfo	meta-data about query
+	 * @return			key identifying query and table IDs
+	 */
+	public static String queryKey(QueryInfo queryInfo) {
+		StringBuilder keyBuilder = new StringBuilder();
+		for (int table=0; table<queryInfo.nrTables; ++table) {
+			String alias = queryInfo.tableIDtoAlias.get(table);
+			String name = queryInfo.tableAliasToName.get(alias);
+			keyBuilder.append(table + ":" + name + " AS " + alias + ";");
+		}
+		List<String> preds = new ArrayList<String>();
+		for (PredInfo pred : queryInfo.predicates) {
+			preds.add(pred.sql);
+		}
+		Collections.sort(preds);
+		for (String pred : preds) {
+			keyBuilder.append(pred + ";");
+		}
+		return keyBuilder.toString();
+	}
+	/**
+	 * Reads checkpoint from given file or returns null
+	 * if the file does not exist.
+	 * 
+	 * @param path	path to checkpoint file
+	 * @return		checkpoint or null
+	 * @throws Exception
+	 */
+	public static Checkpoint load(String path) throws Exception {
+		if (!new File(path).exists()) {
+			return null;
+		}
+		FileInputStream checkpointFileStream = new FileInputStream(path);
+		ObjectInputStream checkpointObjStream =
+				new ObjectInputStream(checkpointFileStream);
+		Checkpoint checkpoint = (Checkpoint)checkpointObjStream.readObject();
+		checkpointObjStream.close();
+		checkpointFileStream.close();
+		return checkpoint;
+	}
+	/**
+	 * Writes checkpoint to given file. The checkpoint is written
+	 * to a temporary file first and moved afterwards (so that an
+	 * interruption never leaves an incomplete checkpoint).
+	 * 
+	 * @param path	path to checkpoint file
+	 * @throws Exception
+	 */
+	public void save(String path) throws Exception {
+		String tempPath = path + ".tmp";
+		FileOutputStream checkpointFileStream = new FileOutputStream(tempPath);
+		ObjectOutputStream checkpointObjStream =
+				new ObjectOutputStream(checkpointFileStream);
+		checkpointObjStream.writeObject(this);
+		checkpointObjStream.close();
+		checkpointFileStream.close();
+		Files.move(Paths.get(tempPath), Paths.get(path),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -12,5 +12,6 @@ public enum CostModel {
 	VERIFIABILITY,	// maximize probability of successful verification
 	NR_VERIFIABLE,	// maximizes number of relations that could verify
 	BEST_GUESS,		// use current best guess cardinality
-	SAFE_GUESS		// binary cost metric: guess cannot exceed limit
+	SAFE_GUESS,		// binary cost metric: guess cannot exceed limit
+	INFO_GAIN		// predicted probe cost (probes are ranked by gain per cost)
 }
@@ -0,0 +1,121 @@
+package optimizers.safe;
+
+import common.plans.ProbePlan;
+
+/**
+ * Describes the state of an optimizer run that is in progress:
+ * the best plan found so far with bounds on its sub-optimality
+ * and the number of relations in each status.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class Progress {
+	/**
+	 * Plan for all query tables with minimal cost according
+	 * to upper cardinality bounds (null if no such plan with
+	 * finite cost is known yet).
+	 */
+	public final ProbePlan bestPlan;
+	/**
+	 * Upper bound on the cost of the best plan.
+	 */
+	public final double bestCostUB;
+	/**
+	 * Lower bound on the cost of an optimal plan.
+	 */
+	public final double bestCostLB;
+	/**
+	 * Number of relations whose cardinality was verified.
+	 */
+	public final int nrVerified;
+	/**
+	 * Number of relations that remain to be treated.
+	 */
+	public final int nrPending;
+	/**
+	 * Number of relations that cannot be verified with
+	 * the current cardinality limit.
+	 */
+	public final int nrUnverif;
+	/**
+	 * Number of relations that cannot appear in optimal plans.
+	 */
+	public final int nrExcluded;
+	/**
+	 * Current cardinality limit for probes.
+	 */
+	public final int limit;
+	/**
+	 * Number of probe queries issued so far.
+	 */
+	public final int nrQueries;
+	/**
+	 * Number of milliseconds spent on optimization so far.
+	 */
+	public final long totalMillis;
+	/**
+	 * Initializes a snapshot of optimizer progress.
+	 * 
+	 * @param bestPlan		best plan found so far
+	 * @param bestCostUB	upper bound on cost of best plan
+	 * @param bestCostLB	lower bound on optimal plan cost
+	 * @param nrVerified	number of verified relations
+	 * @param nrPending		number of pending relations
+	 * @param nrUnverif		number of temporarily excluded relations
+	 * @param nrExcluded	number of excluded relations
+	 * @param limit			current cardinality limit
+	 * @param nrQueries		number of queries issued so far
+	 * @param totalMillis	optimization time so far
+	 */
+	public Progress(ProbePlan bestPlan, double bestCostUB, 
+			double bestCostLB, int nrVerified, int nrPending, 
+			int nrUnverif, int nrExcluded, int limit, 
+			int nrQueries, long totalMillis) {
+		this.bestPlan = bestPlan;
+		this.bestCostUB = bestCostUB;
+		this.bestCostLB = bestCostLB;
+		this.nrVerified = nrVerified;
+		this.nrPending = nrPending;
+		this.nrUnverif = nrUnverif;
+		this.nrExcluded = nrExcluded;
+		this.limit = limit;
+		this.nrQueries = nrQueries;
+		this.totalMillis = totalMillis;
+	}
+	/**
+	 * Returns the relative optimality gap of the best plan, i.e.
+	 * the maximal fraction of its cost that could be saved by an
+	 * optimal plan (one if no plan with finite cost is known).
+	 * 
+	 * @return	relative gap between zero and one
+	 */
+	public double gap() {
+		if (bestCostUB == Double.POSITIVE_INFINITY) {
+			return 1;
+		} else if (bestCostUB <= 0) {
+			return 0;
+		} else {
+			return Math.max(0, (bestCostUB - bestCostLB) / bestCostUB);
+		}
+	}
+	/**
+	 * Returns the fraction of relations with a final status
+	 * (i.e., verified or excluded relations).
+	 * 
+	 * @return	fraction of treated relations
+	 */
+	public double verifiedRatio() {
+		int nrTreated = nrVerified + nrExcluded;
+		int nrRels = nrTreated + nrPending + nrUnverif;
+		return nrRels == 0 ? 1 : (double)nrTreated / nrRels;
+	}
+	@Override
+	public String toString() {
+		return "Cost in [" + bestCostLB + ", " + bestCostUB + 
+				"], gap " + gap() + ", verified " + nrVerified + 
+				", pending " + nrPending + ", unverif " + nrUnverif + 
+				", excluded " + nrExcluded + ", limit " + limit + 
+				", queries " + nrQueries + ", millis " + totalMillis;
+	}
+}
@@ -0,0 +1,17 @@
+package optimizers.safe;
+
+/**
+ * Receives progress updates during optimization.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public interface ProgressListener {
+	/**
+	 * Invoked after each round of cardinality probes.
+	 * 
+	 * @param progress	current optimizer progress
+	 * @return			true iff optimization should continue
+	 */
+	public boolean onProgress(Progress progress);
+}
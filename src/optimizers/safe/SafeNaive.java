@@ -17,7 +17,7 @@ import common.plans.LeafPlan;
 import common.plans.ProbePlan;
 import optimizers.Optimizer;
 import pgConnector.AnalyzeInfo;
-import pgConnector.PgConnector;
+import pgConnector.ProbeBackend;
 
 /**
  * Simple version of safe approach for generating
@@ -27,8 +27,8 @@ import pgConnector.PgConnector;
  *
  */
 public class SafeNaive extends Optimizer {
-	public SafeNaive(int timeoutMillis, PgConnector pgConnector) {
-		super(timeoutMillis, pgConnector);
+	public SafeNaive(int timeoutMillis, ProbeBackend backend) {
+		super(timeoutMillis, backend);
 	}
 	/**
 	 * Contains information on relations generated during
@@ -274,7 +274,7 @@ public class SafeNaive extends Optimizer {
 			String probeSQLstem = sqlGen.safeProbeQuery(
 					probePlan, maxCard, true);
 			String countSQL = "SELECT COUNT(*) FROM (" + probeSQLstem + ") as temp"; 
-			ResultSet result = pgConnector.query(countSQL, timeoutMillis);
+			ResultSet result = backend.query(countSQL, timeoutMillis);
 			result.next();
 			int card = Integer.parseInt(result.getString(1));
 			maxBaseCard = Math.max(maxBaseCard, card);
@@ -315,7 +315,7 @@ public class SafeNaive extends Optimizer {
 				String probeSQLstem = sqlGen.safeProbeQuery(
 						probePlan, maxCard, true);
 				// Extract cardinality measures from query result
-				AnalyzeInfo analyzeInfo = new AnalyzeInfo(pgConnector, 
+				AnalyzeInfo analyzeInfo = new AnalyzeInfo(backend, 
 						queryInfo, probePlan, maxCard, timeoutMillis, 
 						probeSQLstem);
 				System.out.println(analyzeInfo.relToCard.toString());
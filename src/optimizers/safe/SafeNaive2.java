@@ -1,26 +1,37 @@
 package optimizers.safe;
 
-import java.sql.ResultSet;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import SQLtools.QueryInfo;
 import SQLtools.SQLgenerator;
+import common.BoundsTable;
+import common.PlanTable;
 import common.PlanUtil;
 import common.RelUtil;
+import common.plans.CompositePlan;
 import common.plans.LeafPlan;
 import common.plans.ProbePlan;
 import optimizers.Optimizer;
 import pgConnector.AnalyzeInfo;
 import pgConnector.CardStatus;
-import pgConnector.ExplainInfo;
-import pgConnector.PgConnector;
+import pgConnector.ProbeBackend;
 import reference.RefUtil;
 
 /**
@@ -31,98 +42,367 @@ import reference.RefUtil;
  *
  */
 public class SafeNaive2 extends Optimizer {
-	public SafeNaive2(int timeoutMillis, PgConnector pgConnector) {
-		super(timeoutMillis, pgConnector);
+	public SafeNaive2(int timeoutMillis, ProbeBackend backend) {
+		super(timeoutMillis, backend);
 	}
 	/**
 	 * Contains information on relations generated during
 	 * the last optimizer invocation.
 	 */
-	public Map<BitSet, RelInfo> relInfos;
+	public Map<Long, RelInfo> relInfos;
+	/**
+	 * Relations joining more tables are restricted to intervals
+	 * of a linear table order (limits the number of relations
+	 * to probe for queries with many tables).
+	 */
+	public int maxRelSize = Integer.MAX_VALUE;
+	/**
+	 * Levels of the plan space containing at least that many
+	 * relations are planned in parallel (the same threshold
+	 * applies to relations re-planned in one level).
+	 */
+	public int parallelThreshold = 2000;
+	/**
+	 * Whether probes measure execution time per plan node
+	 * (only row counts are needed, so timing is off by
+	 * default to avoid its overhead).
+	 */
+	public boolean probeTiming = false;
+	/**
+	 * Whether probes measure buffer usage (which is
+	 * reported for each probe).
+	 */
+	public boolean probeBuffers = false;
+	/**
+	 * Number of database connections used for probing - up to
+	 * that many probe plans are executed concurrently per round.
+	 */
+	public int nrProbeConnections = 1;
+	/**
+	 * Whether to select the next probe plans speculatively while
+	 * the current probes execute (speculative plans are used if
+	 * they remain admissible after processing the probe results).
+	 */
+	public boolean pipelineProbes = false;
+	/**
+	 * Number of hash partitions into which each probe is split
+	 * (partitioned on the join column of its largest table). All
+	 * slices are executed concurrently and their row counts are
+	 * merged afterwards. No slicing is used for value one.
+	 */
+	public int nrProbeSlices = 1;
+	/**
+	 * Path to file storing cardinality values across optimizer
+	 * runs (cached values are used before issuing probes and
+	 * new results are added after optimization). No persistent
+	 * cache is used if this path is null.
+	 */
+	public String cardCachePath = null;
+	/**
+	 * Path to file storing the state of the current optimizer run
+	 * (a run is resumed from that state if the file exists). No
+	 * checkpoints are stored if this path is null.
+	 */
+	public String checkpointPath = null;
+	/**
+	 * Minimal number of milliseconds between two checkpoints.
+	 */
+	public long checkpointMillis = 60000;
+	/**
+	 * Receives progress updates after each probing round and
+	 * may stop optimization early (no updates if null).
+	 */
+	public ProgressListener progressListener = null;
+	/**
+	 * Optimization stops once the relative optimality gap of the
+	 * best plan drops to this value (if it is positive).
+	 */
+	public double targetGap = 0;
+	/**
+	 * Progress after the last probing round (may be polled by
+	 * other threads while optimization is running).
+	 */
+	public volatile Progress progress = null;
+	/**
+	 * Policy for selecting probe plans once a complete plan is
+	 * known: NR_VERIFIABLE maximizes the number of verifiable
+	 * relations, INFO_GAIN maximizes expected gain per cost.
+	 */
+	public CostModel probePolicy = CostModel.NR_VERIFIABLE;
+	/**
+	 * Maximal number of queries whose cardinality is estimated by
+	 * the Postgres optimizer in one round trip (during startup).
+	 */
+	public int estimateBatchSize = 1000;
+	/**
+	 * Whether to read key constraints from the database catalog
+	 * if no reference information is passed to the optimizer.
+	 */
+	public boolean catalogKeys = true;
+	/**
+	 * Executes probe plans concurrently (only used if several
+	 * probe connections are available).
+	 */
+	ExecutorService probeExecutor;
+	/**
+	 * Maps cost models to the plans for all query tables that
+	 * were generated during the last planning invocation with
+	 * that cost model (used for incremental re-planning).
+	 */
+	Map<CostModel, PlanTable> lastPlans;
+	/**
+	 * Maps cost models to the relation cardinality values used
+	 * during the last planning invocation with that cost model.
+	 */
+	Map<CostModel, double[]> lastCards;
+	/**
+	 * Plans for lower and upper cardinality bounds generated
+	 * during the last invocation of the bounds planner.
+	 */
+	BoundsTable lastBounds;
+	/**
+	 * Indexes relations by their status (relation status
+	 * must be changed via this index).
+	 */
+	StatusIndex statusIndex;
+	/**
+	 * Operand status admitting plans that may be optimal.
+	 */
+	static final Set<RelStatus> NOT_EXCLUDED = EnumSet.of(
+			RelStatus.VERIFIED, RelStatus.PENDING, RelStatus.UNVERIF);
+	/**
+	 * Operand status admitting plans that may be verified
+	 * with the current cardinality limit.
+	 */
+	static final Set<RelStatus> VERIFIABLE = EnumSet.of(
+			RelStatus.VERIFIED, RelStatus.PENDING);
+	/**
+	 * Cost models used to select probe plans.
+	 */
+	static final Set<CostModel> PROBE_MODELS = EnumSet.of(
+			CostModel.SAFE_GUESS, CostModel.NR_VERIFIABLE, 
+			CostModel.INFO_GAIN);
+	/**
+	 * Relations generated by probe plans that were selected
+	 * for the current round or are still running (plans for
+	 * further probes of that round must avoid them).
+	 */
+	final Set<Long> reservedRels = new HashSet<Long>();
+	/**
+	 * Ordinals of relations whose cardinality or cost bounds
+	 * changed since the last status update (only those and
+	 * their supersets need to be re-examined).
+	 */
+	final BitSet changedRels = new BitSet();
+	/**
+	 * Upper bound on optimal plan cost used during the last
+	 * status update.
+	 */
+	double lastCostUB = Double.POSITIVE_INFINITY;
+	/**
+	 * Generates plans for joining all query tables (which yields
+	 * the best plan for each relation as well). Re-uses the plans
+	 * generated during the last invocation with the same cost
+	 * model and updates only plans for relations that are
+	 * affected by changed cardinality values.
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		planning utility methods
+	 * @param costModel		cost model used to obtain cardinality values
+	 * @param card			cardinality value for each relation ordinal
+	 * 						(the array is kept and must not be modified)
+	 * @param ignoreTarget	whether to ignore cost of writing final result
+	 * @return				optimal plans for given cardinality values
+	 */
+	PlanTable planAllTables(QueryInfo queryInfo, PlanUtil planUtil, 
+			CostModel costModel, double[] card, boolean ignoreTarget) {
+		PlanTable planTable = lastPlans.get(costModel);
+		double[] lastCard = lastCards.get(costModel);
+		if (planTable == null || planTable.ignoreTarget != ignoreTarget) {
+			planTable = planUtil.plan(queryInfo.allTables, 
+					card, ignoreTarget);
+		} else {
+			// Determine relations with changed cardinality values
+			Set<Long> changedRels = new HashSet<Long>();
+			int nrRels = planUtil.rels.length;
+			for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+				if (Double.compare(lastCard[relIndex], card[relIndex]) != 0) {
+					changedRels.add(planUtil.rels[relIndex]);
+				}
+			}
+			planUtil.replan(planTable, card, changedRels);
+		}
+		lastPlans.put(costModel, planTable);
+		lastCards.put(costModel, card);
+		return planTable;
+	}
+	/**
+	 * Generates plans for joining all query tables according to
+	 * lower and to upper cardinality bounds in one pass, together
+	 * with lower bounds on completion cost. Re-uses the plans
+	 * generated during the last invocations with the bound cost
+	 * models and stores the new plans for them (so subsequent
+	 * planning with one of those cost models is incremental).
+	 * Once a complete plan with bounded cost is known, its cost
+	 * serves as ceiling to prune relations whose lower cost bound
+	 * (from the last invocation) exceeds it. Excluded relations
+	 * are pruned as well.
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		planning utility methods
+	 * @param cardLBs		lower cardinality bound for each relation
+	 * @param cardUBs		upper cardinality bound for each relation
+	 * @return				optimal plans and completion cost bounds
+	 * @throws Exception
+	 */
+	BoundsTable planBounds(QueryInfo queryInfo, PlanUtil planUtil, 
+			double[] cardLBs, double[] cardUBs) throws Exception {
+		PlanTable lowerTable = lastPlans.get(CostModel.LOWER_BOUNDS);
+		PlanTable upperTable = lastPlans.get(CostModel.UPPER_BOUNDS);
+		BoundsTable bounds = lastBounds;
+		if (bounds == null || bounds.lower != lowerTable || 
+				bounds.upper != upperTable) {
+			bounds = planUtil.planBounds(queryInfo.allTables, 
+					cardLBs, cardUBs, true);
+		} else {
+			// Upper bound on optimal cost (may have been updated
+			// by re-planning after relation status changes).
+			bounds.costCeiling = upperTable.cost(queryInfo.allTables);
+			// Determine relations with changed cardinality bounds
+			double[] lastLBs = lastCards.get(CostModel.LOWER_BOUNDS);
+			double[] lastUBs = lastCards.get(CostModel.UPPER_BOUNDS);
+			Set<Long> changedRels = new HashSet<Long>();
+			int nrRels = planUtil.rels.length;
+			for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+				long rel = planUtil.rels[relIndex];
+				if (Double.compare(lastLBs[relIndex], cardLBs[relIndex]) != 0 ||
+						Double.compare(lastUBs[relIndex], cardUBs[relIndex]) != 0) {
+					changedRels.add(rel);
+				}
+				// Prune excluded relations
+				if (relInfos.get(rel).relStatus == RelStatus.EXCLUDED) {
+					bounds.completionCostLB[relIndex] = Double.POSITIVE_INFINITY;
+					if (lowerTable.cost[relIndex] != Double.POSITIVE_INFINITY) {
+						changedRels.add(rel);
+					}
+				}
+			}
+			planUtil.replanBounds(bounds, cardLBs, cardUBs, changedRels);
+		}
+		lastBounds = bounds;
+		lastPlans.put(CostModel.LOWER_BOUNDS, bounds.lower);
+		lastCards.put(CostModel.LOWER_BOUNDS, cardLBs);
+		lastPlans.put(CostModel.UPPER_BOUNDS, bounds.upper);
+		lastCards.put(CostModel.UPPER_BOUNDS, cardUBs);
+		return bounds;
+	}
 	/**
 	 * Extracts optimistic cardinality estimates from relation info.
 	 * 
+	 * @param planUtil			assigns ordinals to relations
 	 * @param relInfos			maps each relation to meta-data
 	 * @param costModel			how to assign rels to cardinality
 	 * @param ignoreBaseTables	whether to set base cards to zero
-	 * @param card				Maps each relation to lower cardinality
+	 * @param card				Maps each relation ordinal to cardinality
+	 * 							value after this invocation.
 	 * @param limit				current cardinality limit
-	 * 							bound after this invocation.
 	 */
-	void extractCard(Map<BitSet, RelInfo> relInfos, 
+	void extractCard(PlanUtil planUtil, Map<Long, RelInfo> relInfos, 
 			CostModel costModel, boolean ignoreBaseTables, 
-			Map<BitSet, Double> card, int limit) throws Exception {
+			double[] card, int limit) throws Exception {
 		// Get highest known cardinality
 		double maxCard = 0;
 		for (RelInfo info : relInfos.values()) {
 			maxCard = Math.max(maxCard, info.lowerCardBound);
 		}
 		// Iterate over relation meta-data
-		for (Entry<BitSet, RelInfo> entry : relInfos.entrySet()) {
-			BitSet rel = entry.getKey();
-			RelInfo info = entry.getValue();
+		int nrRels = planUtil.rels.length;
+		for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+			long rel = planUtil.rels[relIndex];
+			RelInfo info = relInfos.get(rel);
 			// Check for base tables
-			if (rel.cardinality() == 1 && ignoreBaseTables) {
-				card.put(rel, 0.0);
+			if (RelUtil.cardinality(rel) == 1 && ignoreBaseTables) {
+				card[relIndex] = 0.0;
 			} else {
 				switch (costModel) {
 				case LOWER_BOUNDS:
-					card.put(rel, info.lowerCardBound);
+					card[relIndex] = info.lowerCardBound;
 					break;
 				case UPPER_BOUNDS:
 					if (info.relStatus == RelStatus.VERIFIED) {
-						card.put(rel, info.lowerCardBound);
+						card[relIndex] = info.lowerCardBound;
 					} else {
-						card.put(rel, Double.POSITIVE_INFINITY);
+						card[relIndex] = Double.POSITIVE_INFINITY;
 					}
 					break;
 				case BEST_GUESS:
 					if (info.relStatus == RelStatus.VERIFIED ||
 							info.relStatus == RelStatus.PENDING) {
-						card.put(rel, info.cardBestGuess);
+						card[relIndex] = info.cardBestGuess;
 					} else {
-						card.put(rel, Double.POSITIVE_INFINITY);
+						card[relIndex] = Double.POSITIVE_INFINITY;
 					}
 					break;
 				case SAFE_GUESS:
-					if (info.cardBestGuess >= limit) {
-						card.put(rel, Double.POSITIVE_INFINITY);
+					if (info.relStatus == RelStatus.EXCLUDED ||
+							info.cardBestGuess >= limit) {
+						card[relIndex] = Double.POSITIVE_INFINITY;
 					} else {
-						card.put(rel, info.cardBestGuess);
+						card[relIndex] = info.cardBestGuess;
 					}
 					break;
 				case VERIFIABILITY:
 					if (info.relStatus == RelStatus.VERIFIED) {
-						card.put(rel, info.lowerCardBound);
+						card[relIndex] = info.lowerCardBound;
 					} else if (info.relStatus == RelStatus.PENDING) {
-						card.put(rel, maxCard);
+						card[relIndex] = maxCard;
 					} else {
-						card.put(rel, Double.POSITIVE_INFINITY);
+						card[relIndex] = Double.POSITIVE_INFINITY;
 					}
 					break;
 				case NR_VERIFIABLE:
-					if (rel.cardinality() == 1 && ignoreBaseTables) {
-						card.put(rel, 0.0);
-					} else if (info.lowerCardBound >= limit) {
-						card.put(rel, Double.POSITIVE_INFINITY);
+					if (RelUtil.cardinality(rel) == 1 && ignoreBaseTables) {
+						card[relIndex] = 0.0;
+					} else if (info.relStatus == RelStatus.EXCLUDED ||
+							info.lowerCardBound >= limit) {
+						card[relIndex] = Double.POSITIVE_INFINITY;
 					} else if (info.relStatus != RelStatus.PENDING) {
-						card.put(rel, 1.0);
+						card[relIndex] = 1.0;
 					} else {
-						card.put(rel, -2.0);
+						card[relIndex] = -2.0;
 					}
 					/*
 					if (info.relStatus == RelStatus.PENDING) {
-						card.put(rel, -1.0);
+						card[relIndex] = -1.0;
 					} else if (info.relStatus == RelStatus.VERIFIED) {
-						card.put(rel, 0.0);
+						card[relIndex] = 0.0;
 					} else {
-						card.put(rel, Double.POSITIVE_INFINITY);
+						card[relIndex] = Double.POSITIVE_INFINITY;
 					}
 					*/
 					break;
+				case INFO_GAIN:
+					// Base tables are scanned without limit
+					if (RelUtil.cardinality(rel) == 1) {
+						card[relIndex] = info.lowerCardBound;
+					} else if (info.relStatus == RelStatus.EXCLUDED ||
+							info.lowerCardBound >= limit) {
+						card[relIndex] = Double.POSITIVE_INFINITY;
+					} else if (info.relStatus == RelStatus.VERIFIED) {
+						card[relIndex] = info.lowerCardBound;
+					} else {
+						card[relIndex] = Math.min(limit, Math.max(
+								info.cardBestGuess, info.lowerCardBound));
+					}
+					break;
 				default:
 					throw new Exception("Unsupported cost model");
 				}
+				// Probes of the same round must not overlap
+				if (!reservedRels.isEmpty() && PROBE_MODELS.contains(
+						costModel) && reservedRels.contains(rel)) {
+					card[relIndex] = Double.POSITIVE_INFINITY;
+				}
 			} // base tables
 		}
 	}
@@ -138,14 +418,15 @@ public class SafeNaive2 extends Optimizer {
 	 * @param refUtil		information on key-foreign key constraints
 	 */
 	void updateCard(PlanUtil planUtil, ProbePlan plan, int cardBudget, 
-			AnalyzeInfo analyzeInfo, Map<BitSet, RelInfo> relInfos,
+			AnalyzeInfo analyzeInfo, Map<Long, RelInfo> relInfos,
 			RefUtil refUtil) throws Exception {
 		// Update lower cardinality bounds and verification status
-		for (Entry<BitSet, Integer> entry : 
+		for (Entry<Long, Integer> entry : 
 			analyzeInfo.relToCard.entrySet()) {
-			BitSet rel = entry.getKey();
+			long rel = entry.getKey();
 			Integer card = entry.getValue();
 			RelInfo info = relInfos.get(rel);
+			changedRels.set(planUtil.index(rel));
 			info.lowerCardBound = Math.max(
 					info.lowerCardBound, card);
 			info.cardBestGuess = Math.max(
@@ -155,47 +436,152 @@ public class SafeNaive2 extends Optimizer {
 					CardStatus.EXACT) {
 				info.upperCardBound = card;
 			}
-			if (info.lowerCardBound > info.upperCardBound) {
-				throw new Exception("Lower cardinality bound " +
-						"above upper bound for relation " +
-						rel.toString() + " " + info.toString());
+			checkBounds(rel, info);
+		}
+		// Derive bounds for relations that were not probed
+		propagateBounds(planUtil, relInfos, refUtil);
+	}
+	/**
+	 * Derives cardinality bounds from bounds on neighboring relations
+	 * in the plan space. Upper bounds are propagated bottom-up: a join
+	 * result is bounded by the product of its operand cardinalities.
+	 * If one operand is the key side of a key-foreign key join with
+	 * the other operand, the result is bounded by the cardinality of
+	 * the other operand (each of its tuples has at most one join
+	 * partner). Lower bounds are propagated top-down using the same
+	 * inequalities (e.g., an operand has at least as many tuples
+	 * as the join result divided by the other operand size).
+	 * 
+	 * @param planUtil	auxiliary methods for query planning
+	 * @param relInfos	relation meta-data to update
+	 * @param refUtil	information on key-foreign key constraints
+	 * 					(only generic bounds are used if null)
+	 * @return			number of relations with tightened bounds
+	 * @throws Exception
+	 */
+	int propagateBounds(PlanUtil planUtil, Map<Long, RelInfo> relInfos, 
+			RefUtil refUtil) throws Exception {
+		int nrRels = planUtil.rels.length;
+		int firstJoin = planUtil.levelStart[2];
+		RelInfo[] infos = new RelInfo[nrRels];
+		for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+			infos[relIndex] = relInfos.get(planUtil.rels[relIndex]);
+		}
+		int nrChanged = 0;
+		// Propagate upper bounds bottom-up
+		for (int relIndex=firstJoin; relIndex<nrRels; ++relIndex) {
+			RelInfo info = infos[relIndex];
+			double upper = info.upperCardBound;
+			int splitEnd = planUtil.splitStart[relIndex+1];
+			for (int splitCtr=planUtil.splitStart[relIndex]; 
+					splitCtr<splitEnd; ++splitCtr) {
+				int left = planUtil.splitLeft[splitCtr];
+				int right = planUtil.splitRight[splitCtr];
+				double leftUB = infos[left].upperCardBound;
+				double rightUB = infos[right].upperCardBound;
+				if (leftUB == 0 || rightUB == 0) {
+					upper = 0;
+				} else {
+					upper = Math.min(upper, leftUB * rightUB);
+				}
+				if (keyJoin(planUtil, refUtil, left, right)) {
+					upper = Math.min(upper, leftUB);
+				}
+				if (keyJoin(planUtil, refUtil, right, left)) {
+					upper = Math.min(upper, rightUB);
+				}
+			}
+			if (upper < info.upperCardBound) {
+				info.upperCardBound = upper;
+				info.cardBestGuess = Math.min(info.cardBestGuess, upper);
+				checkBounds(planUtil.rels[relIndex], info);
+				changedRels.set(relIndex);
+				++nrChanged;
 			}
 		}
-		// Propagate cardinality bounds top-down
-		QueryInfo queryInfo = analyzeInfo.queryInfo;
-		int nrTables = queryInfo.nrTables;
-		for (int k=nrTables; k>=2; --k) {
-			for (BitSet rel : planUtil.relsByCard.get(k)) {
-				RelInfo info = relInfos.get(rel);
-				for (BitSet subRel : planUtil.relToSubsets.get(rel)) {
-					BitSet subRel2 = new BitSet();
-					subRel2.or(rel);
-					subRel2.andNot(subRel);
-					if (refUtil.onForeignSide(subRel, subRel2)) {
-						/*
-						System.out.println("Updated " + 
-								subRel.toString() + 
-								" using " + rel.toString());
-						*/
-						/*
-						RelInfo infoS1 = relInfos.get(subRel);
-						infoS1.lowerCardBound = Math.max(
-								infoS1.lowerCardBound, 
-								info.lowerCardBound);
-						infoS1.cardBestGuess = Math.max(
-								infoS1.cardBestGuess,
-								info.lowerCardBound);
-						*/
-						// TODO: careful, does this propagate errors?
-						/*
-						infoS1.upperCardBound = Math.min(
-								infoS1.upperCardBound,
-								info.upperCardBound);
-						*/
-					}
+		// Propagate lower bounds top-down
+		for (int relIndex=nrRels-1; relIndex>=firstJoin; --relIndex) {
+			double lower = infos[relIndex].lowerCardBound;
+			if (lower <= 0) {
+				continue;
+			}
+			int splitEnd = planUtil.splitStart[relIndex+1];
+			for (int splitCtr=planUtil.splitStart[relIndex]; 
+					splitCtr<splitEnd; ++splitCtr) {
+				int left = planUtil.splitLeft[splitCtr];
+				int right = planUtil.splitRight[splitCtr];
+				double leftUB = infos[left].upperCardBound;
+				double rightUB = infos[right].upperCardBound;
+				double leftLB = rightUB == 0 ? 0 : lower / rightUB;
+				double rightLB = leftUB == 0 ? 0 : lower / leftUB;
+				if (keyJoin(planUtil, refUtil, left, right)) {
+					leftLB = lower;
+				}
+				if (keyJoin(planUtil, refUtil, right, left)) {
+					rightLB = lower;
 				}
+				nrChanged += raiseLowerBound(planUtil, infos, left, leftLB);
+				nrChanged += raiseLowerBound(planUtil, infos, right, rightLB);
 			}
 		}
+		return nrChanged;
+	}
+	/**
+	 * Returns true iff the second operand is a single table on the
+	 * key side of a key-foreign key join with the first operand.
+	 * 
+	 * @param planUtil		assigns ordinals to relations
+	 * @param refUtil		information on key-foreign key constraints
+	 * @param foreignIndex	ordinal of potential foreign key side
+	 * @param keyIndex		ordinal of potential key side
+	 * @return				true iff operands are joined via key
+	 */
+	boolean keyJoin(PlanUtil planUtil, RefUtil refUtil, 
+			int foreignIndex, int keyIndex) {
+		long keyRel = planUtil.rels[keyIndex];
+		return refUtil != null && RelUtil.cardinality(keyRel) == 1 && 
+				refUtil.onForeignSide(planUtil.rels[foreignIndex], keyRel);
+	}
+	/**
+	 * Raises the lower cardinality bound of the relation with given
+	 * ordinal to the given value (base tables are not updated since
+	 * their cardinality is verified separately).
+	 * 
+	 * @param planUtil		assigns ordinals to relations
+	 * @param infos			relation meta-data by ordinal
+	 * @param relIndex		ordinal of relation to update
+	 * @param lowerBound	derived lower bound on cardinality
+	 * @return				one if the bound was raised, zero otherwise
+	 * @throws Exception
+	 */
+	int raiseLowerBound(PlanUtil planUtil, RelInfo[] infos, 
+			int relIndex, double lowerBound) throws Exception {
+		RelInfo info = infos[relIndex];
+		long rel = planUtil.rels[relIndex];
+		if (RelUtil.cardinality(rel) == 1 || 
+				lowerBound <= info.lowerCardBound) {
+			return 0;
+		}
+		info.lowerCardBound = lowerBound;
+		info.cardBestGuess = Math.max(info.cardBestGuess, lowerBound);
+		checkBounds(rel, info);
+		changedRels.set(relIndex);
+		return 1;
+	}
+	/**
+	 * Throws an exception if the lower cardinality bound of
+	 * the given relation exceeds its upper bound.
+	 * 
+	 * @param rel	a relation
+	 * @param info	meta-data about that relation
+	 * @throws Exception
+	 */
+	void checkBounds(long rel, RelInfo info) throws Exception {
+		if (info.lowerCardBound > info.upperCardBound) {
+			throw new Exception("Lower cardinality bound " +
+					"above upper bound for relation " +
+					RelUtil.toString(rel) + " " + info.toString());
+		}
 	}
 	/**
 	 * Updates relation meta-data that refers to execution
@@ -207,54 +593,30 @@ public class SafeNaive2 extends Optimizer {
 	 * @param relInfos			maps relations to meta-data
 	 */
 	void updateCost(boolean ignoreBaseTables, PlanUtil planUtil, 
-			Map<BitSet, RelInfo> relInfos) throws Exception {
+			Map<Long, RelInfo> relInfos) throws Exception {
 		QueryInfo queryInfo = planUtil.queryInfo;
-		int nrTables = queryInfo.nrTables;
-		// Calculate lower bounds on generation cost (bottom-up)
-		Map<BitSet, Double> cardLBs = new HashMap<BitSet, Double>();
-		extractCard(relInfos, CostModel.LOWER_BOUNDS, true, cardLBs, -1);
-		Map<BitSet, ProbePlan> costLBs = planUtil.plan(
-				queryInfo.allTables, cardLBs, true);
-		for (Entry<BitSet, RelInfo> entry : relInfos.entrySet()) {
-			BitSet rel = entry.getKey();
-			RelInfo info = entry.getValue();
-			info.generationCostLB = costLBs.get(rel).cost;
-		}
-		// Calculate lower bound on completion cost (top-down)
-		for (int k=nrTables-1; k>1; --k) {
-			// Over relations with current cardinality
-			for (BitSet rel : planUtil.relsByCard.get(k)) {
-				RelInfo relInfo = relInfos.get(rel);
-				relInfo.completionCostLB = Double.POSITIVE_INFINITY;
-				// Over valid superset relations
-				for (BitSet supRel : planUtil.relToSupsets.get(rel)) {
-					BitSet complement = new BitSet();
-					complement.or(supRel);
-					complement.andNot(rel);
-					RelInfo supRelInfo = relInfos.get(supRel);
-					RelInfo complRelInfo = relInfos.get(complement);
-					// Calculate cost bound on completion cost
-					double newCost =  supRelInfo.completionCostLB +
-							(supRel.cardinality() != nrTables ?
-									cardLBs.get(supRel):0) + 
-							complRelInfo.generationCostLB;
-					/*
-					System.out.println(rel.toString() + 
-							" over " + supRel.toString() +
-							" cost " + newCost +
-							" ");
-					*/
-					if (newCost <= relInfo.completionCostLB) {
-						relInfo.completionCostLB = newCost;
-					}
-				}
-			}
-		}
+		int nrRels = planUtil.rels.length;
+		// Plan with lower and upper bounds in one pass - the plans
+		// for upper bounds are re-used for bounding optimal cost.
+		double[] cardLBs = new double[nrRels];
+		extractCard(planUtil, relInfos, CostModel.LOWER_BOUNDS, 
+				true, cardLBs, -1);
+		double[] cardUBs = new double[nrRels];
+		extractCard(planUtil, relInfos, CostModel.UPPER_BOUNDS, 
+				true, cardUBs, -1);
+		BoundsTable bounds = planBounds(queryInfo, 
+				planUtil, cardLBs, cardUBs);
 		// Calculate lower bounds on total cost
-		for (Entry<BitSet, RelInfo> entry : relInfos.entrySet()) {
-			RelInfo info = entry.getValue();
-			info.lowerCostBound = info.generationCostLB + 
+		for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+			RelInfo info = relInfos.get(planUtil.rels[relIndex]);
+			info.generationCostLB = bounds.lower.cost[relIndex];
+			info.completionCostLB = bounds.completionCostLB[relIndex];
+			double lowerCostBound = info.generationCostLB + 
 					info.completionCostLB;
+			if (Double.compare(lowerCostBound, info.lowerCostBound) != 0) {
+				info.lowerCostBound = lowerCostBound;
+				changedRels.set(relIndex);
+			}
 		}
 	}
 	/**
@@ -263,21 +625,20 @@ public class SafeNaive2 extends Optimizer {
 	 * both operand relations are assigned to one out of a
 	 * list of admissible relation status values.
 	 * 
-	 * @param rel			a relation to decompose
+	 * @param relIndex		ordinal of relation to decompose
 	 * @param planUtil		used for the decomposition
 	 * @param validStatus	allowed status for join operands
 	 * @return				true iff valid decomposition exists
 	 */
-	boolean validDecomposition(BitSet rel, PlanUtil planUtil, 
+	boolean validDecomposition(int relIndex, PlanUtil planUtil, 
 			Set<RelStatus> validStatus) {
-		for (BitSet subRel : planUtil.relToSubsets.get(rel)) {
-			BitSet subRel2 = new BitSet();
-			subRel2.or(rel);
-			subRel2.andNot(subRel);
-			RelInfo subRelInfo = relInfos.get(subRel);
-			RelInfo subRelInfo2 = relInfos.get(subRel2);
-			if (validStatus.contains(subRelInfo.relStatus) &&
-					validStatus.contains(subRelInfo2.relStatus)) {
+		int splitEnd = planUtil.splitStart[relIndex+1];
+		for (int splitCtr=planUtil.splitStart[relIndex]; 
+				splitCtr<splitEnd; ++splitCtr) {
+			if (validStatus.contains(statusIndex.status(
+					planUtil.splitLeft[splitCtr])) &&
+					validStatus.contains(statusIndex.status(
+							planUtil.splitRight[splitCtr]))) {
 				return true;
 			}
 		}
@@ -293,16 +654,72 @@ public class SafeNaive2 extends Optimizer {
 	 */
 	public double bestCostUB(QueryInfo queryInfo, PlanUtil planUtil) 
 			throws Exception {
-		Map<BitSet, Double> cardEstimates = new HashMap<BitSet, Double>();
-		extractCard(relInfos, CostModel.UPPER_BOUNDS, 
+		double[] cardEstimates = new double[planUtil.rels.length];
+		extractCard(planUtil, relInfos, CostModel.UPPER_BOUNDS, 
+				true, cardEstimates, -1);
+		return planAllTables(queryInfo, planUtil, CostModel.UPPER_BOUNDS, 
+				cardEstimates, true).cost(queryInfo.allTables);
+	}
+	/**
+	 * Summarizes current optimizer progress: the plan for all
+	 * tables that minimizes cost according to upper cardinality
+	 * bounds, bounds on optimal plan cost, and relation counts
+	 * by status.
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		planning utility methods
+	 * @param limit			current cardinality limit
+	 * @return				snapshot of optimizer progress
+	 * @throws Exception
+	 */
+	public Progress progress(QueryInfo queryInfo, PlanUtil planUtil, 
+			int limit) throws Exception {
+		double[] cardEstimates = new double[planUtil.rels.length];
+		extractCard(planUtil, relInfos, CostModel.UPPER_BOUNDS, 
 				true, cardEstimates, -1);
-		ProbePlan bestPessimisticPlan = planUtil.plan(
-				queryInfo.allTables, cardEstimates, true).get(
-						queryInfo.allTables);
-		return bestPessimisticPlan.cost;
+		PlanTable plans = planAllTables(queryInfo, planUtil, 
+				CostModel.UPPER_BOUNDS, cardEstimates, true);
+		long allTables = queryInfo.allTables;
+		return new Progress(plans.plan(allTables), plans.cost(allTables), 
+				relInfos.get(allTables).generationCostLB,
+				statusIndex.count(RelStatus.VERIFIED),
+				statusIndex.count(RelStatus.PENDING),
+				statusIndex.count(RelStatus.UNVERIF),
+				statusIndex.count(RelStatus.EXCLUDED),
+				limit, nrQueries, totalMillis);
 	}
 	/**
-	 * Updates the status of all relations.
+	 * Publishes current optimizer progress and notifies the
+	 * progress listener. Returns false if optimization should
+	 * stop (requested by the listener or target gap reached).
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		planning utility methods
+	 * @param limit			current cardinality limit
+	 * @param startMillis	optimization start time
+	 * @return				true iff optimization should continue
+	 * @throws Exception
+	 */
+	boolean reportProgress(QueryInfo queryInfo, PlanUtil planUtil, 
+			int limit, long startMillis) throws Exception {
+		updateTime(startMillis);
+		progress = progress(queryInfo, planUtil, limit);
+		System.out.println("Progress:\t" + progress.toString());
+		boolean proceed = progressListener == null || 
+				progressListener.onProgress(progress);
+		if (targetGap > 0 && progress.gap() <= targetGap) {
+			System.out.println("Reached target gap");
+			proceed = false;
+		}
+		return proceed;
+	}
+	/**
+	 * Updates the status of relations whose cardinality or cost
+	 * bounds changed since the last update, and of relations
+	 * whose cost bounds exceed a decreased bound on optimal cost.
+	 * Supersets of relations whose status changes are updated
+	 * as well (their decompositions may become invalid). All
+	 * relations are updated after a cardinality limit change.
 	 * 
 	 * @param queryInfo			meta-data about query
 	 * @param planUtil			utility methods for planning
@@ -313,87 +730,87 @@ public class SafeNaive2 extends Optimizer {
 	public void updateStatus(QueryInfo queryInfo, 
 			PlanUtil planUtil, boolean ignoreBaseTables,
 			int limit, boolean limitUpdated) throws Exception {
-		// Calculate upper bound for optimal plan cost
-		double bestCostUB = bestCostUB(queryInfo, planUtil);
+		// Upper bound on optimal plan cost from last cost update
+		// (stays valid if relations were verified since then).
+		double bestCostUB = lastBounds != null ? 
+				lastBounds.upper.cost(queryInfo.allTables) :
+					bestCostUB(queryInfo, planUtil);
 		double bestCostLB = relInfos.get(queryInfo.allTables).generationCostLB;
 		System.out.println("Upper bound on best cost:\t" + bestCostUB);
 		System.out.println("Lower bound on best cost:\t" + bestCostLB);
 		System.out.println("Limit:\t" + limit);
-		// Mark pending relations as verified if possible
-		int kStart = ignoreBaseTables ? 2:1;
-		for (int k=kStart; k<=queryInfo.nrTables; ++k) {
-			Set<BitSet> rels = planUtil.relsByCard.get(k);
-			for (BitSet rel : rels) {
-				RelInfo info = relInfos.get(rel);
-				// Re-insert temporarily excluded relations
-				// in case of a cardinality limit increase.
-				if (info.relStatus == RelStatus.UNVERIF && 
-						limitUpdated) {
-					info.relStatus = RelStatus.PENDING;
+		// Collect relations to update - excluded relations keep
+		// their status and are skipped.
+		int nrRels = planUtil.rels.length;
+		int start = ignoreBaseTables ? statusIndex.firstJoin : 0;
+		BitSet excluded = statusIndex.rels(RelStatus.EXCLUDED);
+		BitSet toUpdate = changedRels;
+		if (limitUpdated) {
+			toUpdate.set(0, nrRels);
+		} else if (bestCostUB < lastCostUB) {
+			for (int relIndex=excluded.nextClearBit(start); relIndex<nrRels; 
+					relIndex=excluded.nextClearBit(relIndex+1)) {
+				long rel = planUtil.rels[relIndex];
+				if (relInfos.get(rel).lowerCostBound > bestCostUB) {
+					toUpdate.set(relIndex);
 				}
-				// Try verifying relation
-				if (info.relStatus == RelStatus.PENDING) {
-					if (info.lowerCardBound * 1.01 >= 
-							info.upperCardBound) {
-						System.out.println("Verified " + rel.toString());
-						info.relStatus = RelStatus.VERIFIED;
-					}
+			}
+		}
+		lastCostUB = bestCostUB;
+		toUpdate.andNot(excluded);
+		// Mark pending relations as verified if possible. Relations
+		// are treated in cardinality order (i.e., after their operands).
+		for (int relIndex=toUpdate.nextSetBit(start); relIndex>=0; 
+				relIndex=toUpdate.nextSetBit(relIndex+1)) {
+			long rel = planUtil.rels[relIndex];
+			RelInfo info = relInfos.get(rel);
+			if (info.relStatus == RelStatus.EXCLUDED) {
+				continue;
+			}
+			RelStatus oldStatus = info.relStatus;
+			// Re-insert temporarily excluded relations
+			// in case of a cardinality limit increase.
+			if (info.relStatus == RelStatus.UNVERIF && 
+					limitUpdated) {
+				statusIndex.setStatus(rel, RelStatus.PENDING);
+			}
+			// Try verifying relation
+			if (info.relStatus == RelStatus.PENDING) {
+				if (info.lowerCardBound * 1.01 >= 
+						info.upperCardBound) {
+					System.out.println("Verified " + RelUtil.toString(rel));
+					statusIndex.setStatus(rel, RelStatus.VERIFIED);
 				}
-				// Try permanently excluding relation directly
-				{
-					Set<RelStatus> validStates = new HashSet<RelStatus>();
-					validStates.add(RelStatus.VERIFIED);
-					validStates.add(RelStatus.PENDING);
-					validStates.add(RelStatus.UNVERIF);
-					if (info.lowerCostBound > bestCostUB ||
-							!validDecomposition(rel, 
-									planUtil, validStates)) {
-						if (info.relStatus != RelStatus.EXCLUDED) {
-							System.out.println("Excluded " + 
-									rel.toString() + " " + 
-									info.toString());							
-						}
-						info.relStatus = RelStatus.EXCLUDED;
-					}					
+			}
+			// Try permanently excluding relation directly
+			if (info.lowerCostBound > bestCostUB ||
+					!validDecomposition(relIndex, 
+							planUtil, NOT_EXCLUDED)) {
+				System.out.println("Excluded " + 
+						RelUtil.toString(rel) + " " + 
+						info.toString());
+				statusIndex.setStatus(rel, RelStatus.EXCLUDED);
+			}
+			// Try excluding pending relations temporarily
+			if (info.relStatus == RelStatus.PENDING) {
+				if (info.lowerCardBound >= limit ||
+						!validDecomposition(relIndex, 
+								planUtil, VERIFIABLE)) {
+					System.out.println("Temporarily excluded " + 
+							RelUtil.toString(rel));
+					statusIndex.setStatus(rel, RelStatus.UNVERIF);
 				}
-				// Try excluding pending relations temporarily
-				if (info.relStatus == RelStatus.PENDING) {
-					Set<RelStatus> validStates = new HashSet<RelStatus>();
-					validStates.add(RelStatus.VERIFIED);
-					validStates.add(RelStatus.PENDING);
-					if (info.lowerCardBound >= limit ||
-							!validDecomposition(rel, 
-									planUtil, validStates)) {
-						System.out.println("Temporarily excluded " + rel.toString());
-						info.relStatus = RelStatus.UNVERIF;						
-					}
+			}
+			// Decompositions of supersets may have become invalid
+			if (info.relStatus != oldStatus && 
+					!VERIFIABLE.contains(info.relStatus)) {
+				for (int supset=planUtil.supsetStart[relIndex]; 
+						supset<planUtil.supsetStart[relIndex+1]; ++supset) {
+					toUpdate.set(planUtil.supsets[supset]);
 				}
-			} // over all k-relations
-		} // over relation cardinality
-	}
-	/**
-	 * Examine relation meta-data and extract all relations
-	 * with a specified relation status.
-	 * 
-	 * @param relInfos			relation meta-data
-	 * @param ignoreBaseTables	whether to add base tables
-	 * @param relStatus			get relations of that status
-	 * 
-	 * @return	a list of relations with given status
-	 */
-	List<BitSet> getByStatus(Map<BitSet, RelInfo> relInfos, 
-			boolean ignoreBaseTables, RelStatus relStatus) {
-		List<BitSet> resultRels = new ArrayList<BitSet>();
-		for (Entry<BitSet, RelInfo> entry : relInfos.entrySet()) {
-			BitSet rel = entry.getKey();
-			RelInfo info = entry.getValue();
-			boolean baseTable = rel.cardinality() == 1;
-			if (info.relStatus == relStatus &&
-					(!baseTable || !ignoreBaseTables)) {
-				resultRels.add(rel);				
 			}
-		}
-		return resultRels;
+		} // over relations to update
+		changedRels.clear();
 	}
 	/**
 	 * Selects next relation to verify.
@@ -402,19 +819,13 @@ public class SafeNaive2 extends Optimizer {
 	 * @param relInfos	meta-data about relation status
 	 * @return			next relation to verify
 	 */
-	BitSet selectRel(PlanUtil planUtil, Map<BitSet, RelInfo> relInfos) {
-		int nrTables = planUtil.queryInfo.nrTables;
-		for (int k=2; k<=nrTables; ++k) {
-		//for (int k=nrTables; k>=2; --k) {
-			Set<BitSet> rels = planUtil.relsByCard.get(k);
-			for (BitSet rel : rels) {
-				if (relInfos.get(rel).relStatus == RelStatus.PENDING) {
-					return rel;
-				}
-			}
+	long selectRel(PlanUtil planUtil, Map<Long, RelInfo> relInfos) {
+		int relIndex = statusIndex.nextJoin(RelStatus.PENDING, 0);
+		if (relIndex >= 0) {
+			return planUtil.rels[relIndex];
 		}
 		System.out.println("No relations left");
-		return null;
+		return 0;
 	}
 	/**
 	 * Verifies cardinality of base relations (after
@@ -433,25 +844,38 @@ public class SafeNaive2 extends Optimizer {
 		int nrTables = queryInfo.nrTables;
 		int maxBaseCard = 0;
 		for (int table=0; table<nrTables && !timeout; ++table) {
+			// Skip tables verified before (e.g., in a previous run)
+			RelInfo tableInfo = relInfos.get(RelUtil.singleton(table));
+			if (tableInfo.relStatus == RelStatus.VERIFIED) {
+				maxBaseCard = Math.max(maxBaseCard, 
+						(int)tableInfo.lowerCardBound);
+				continue;
+			}
 			// Calculate cardinality after applying predicates
 			LeafPlan probePlan = new LeafPlan(queryInfo, table, 0);
 			int maxCard = Integer.MAX_VALUE;
 			String probeSQLstem = sqlGen.safeProbeQuery(
 					queryInfo, probePlan, maxCard, true);
-			String countSQL = "SELECT COUNT(*) FROM (" + 
-					probeSQLstem + ") as temp"; 
-			System.out.println(countSQL);
-			ResultSet result = pgConnector.query(countSQL, timeoutMillis);
-			result.next();
-			int card = Integer.parseInt(result.getString(1));
+			System.out.println(probeSQLstem);
+			int card;
+			try {
+				card = (int)backend.countRows(probeSQLstem, timeoutMillis);
+			} catch (Exception e) {
+				// Stop verification if cancelled at deadline
+				if (backend.deadlinePassed()) {
+					timeout = true;
+					break;
+				}
+				throw e;
+			}
 			maxBaseCard = Math.max(maxBaseCard, card);
 			// Store cardinality and mark table as verified
-			BitSet rel = new BitSet();
-			rel.set(table);
+			long rel = RelUtil.singleton(table);
 			RelInfo relInfo = relInfos.get(rel);
 			relInfo.lowerCardBound = card;
+			relInfo.upperCardBound = card;
 			relInfo.cardBestGuess = card;
-			relInfo.relStatus = RelStatus.VERIFIED;
+			statusIndex.setStatus(rel, RelStatus.VERIFIED);
 		}
 		return maxBaseCard;
 	}
@@ -469,42 +893,50 @@ public class SafeNaive2 extends Optimizer {
 		// Calculate upper bound on optimal cost
 		double bestCostUB = bestCostUB(queryInfo, planUtil);
 		boolean completePlan = bestCostUB != Double.POSITIVE_INFINITY;
-		Map<BitSet, Double> cardVals = new HashMap<BitSet, Double>();
-		BitSet allTables = queryInfo.allTables;
+		int nrRels = planUtil.rels.length;
+		long allTables = queryInfo.allTables;
 		ProbePlan probePlan = null;
-		// If we have no complete plan yet
-		if (!completePlan) {
+		// If we have no complete plan yet (and no plan for all
+		// tables is already selected for the current round).
+		if (!completePlan && !reservedRels.contains(allTables)) {
 			System.out.println("Trying to find a complete plan");
-			extractCard(relInfos, CostModel.SAFE_GUESS, 
+			double[] cardVals = new double[nrRels];
+			extractCard(planUtil, relInfos, CostModel.SAFE_GUESS, 
 					true, cardVals, limit);
-			probePlan = planUtil.plan(allTables, 
-					cardVals, true).get(allTables);
+			probePlan = planAllTables(queryInfo, planUtil, 
+					CostModel.SAFE_GUESS, cardVals, true).plan(allTables);
 		}
 		// If no interesting plan found
-		if (probePlan == null || probePlan.cost == Double.POSITIVE_INFINITY) {
+		if ((probePlan == null || probePlan.cost == Double.POSITIVE_INFINITY) 
+				&& probePolicy == CostModel.INFO_GAIN) {
+			probePlan = pickInfoGainPlan(queryInfo, planUtil, limit, bestCostUB);
+		} else if (probePlan == null || probePlan.cost == Double.POSITIVE_INFINITY) {
 			probePlan = null;
 			System.out.println("Trying to verify maximal number of rels");
-			extractCard(relInfos, CostModel.NR_VERIFIABLE, 
+			double[] cardVals = new double[nrRels];
+			extractCard(planUtil, relInfos, CostModel.NR_VERIFIABLE, 
 					true, cardVals, limit);
-			int nrTables = queryInfo.nrTables;
+			// Best plans rooted at each relation in one pass
+			PlanTable plans = planAllTables(queryInfo, planUtil, 
+					CostModel.NR_VERIFIABLE, cardVals, false);
 			double bestCost = Double.POSITIVE_INFINITY;
-			for (int k=2; k<=nrTables; ++k) {
-				for (BitSet rel : planUtil.relsByCard.get(k)) {
-					if (relInfos.get(rel).relStatus == RelStatus.PENDING) {
-						// Check whether it is verifiable
-						ProbePlan plan = planUtil.plan(
-								rel, cardVals, false).get(rel);
-						//System.out.println("Rel" + rel.toString());
-						if (plan.cost < bestCost) {
-							probePlan = plan;
-							bestCost = plan.cost;
-						}
-					}
+			long bestRel = 0;
+			for (int relIndex=statusIndex.nextJoin(RelStatus.PENDING, 0); 
+					relIndex>=0; relIndex=statusIndex.nextJoin(
+							RelStatus.PENDING, relIndex+1)) {
+				// Check whether it is verifiable
+				double cost = plans.cost[relIndex];
+				if (cost < bestCost) {
+					bestRel = planUtil.rels[relIndex];
+					bestCost = cost;
 				}
 			}
+			if (bestRel != 0) {
+				probePlan = plans.plan(bestRel);
+			}
 			
 			/*
-			Map<BitSet, ProbePlan> bestPlans = new HashMap<BitSet, ProbePlan>();
+			Map<Long, ProbePlan> bestPlans = new HashMap<Long, ProbePlan>();
 			int nrTables = queryInfo.nrTables;
 			for (int table=0; table<nrTables; ++table) {
 				BitSet rel = new BitSet();
@@ -513,7 +945,7 @@ public class SafeNaive2 extends Optimizer {
 				bestPlans.put(rel, plan);
 			}
 			for (int k=2; k<=nrTables; ++k) {
-				for (BitSet rel : planUtil.relsByCard.get(k)) {
+				for (long rel : planUtil.relsByCard.get(k)) {
 					for (BitSet subRel : planUtil.relToSubsets.get(rel)) {
 						BitSet subRel2 = new BitSet();
 						subRel2.or(rel);
@@ -526,12 +958,12 @@ public class SafeNaive2 extends Optimizer {
 			/*
 			extractCard(relInfos, CostModel.NR_VERIFIABLE, 
 					true, cardVals, -1);
-			Map<BitSet, ProbePlan> bestPlans = planUtil.plan(
+			Map<Long, ProbePlan> bestPlans = planUtil.plan(
 					allTables, cardVals, false);
 			double bestCost = Double.POSITIVE_INFINITY;
 			ProbePlan bestPlan = null;
 			for (int k=2; k<=queryInfo.nrTables; ++k) {
-				for (BitSet rel : planUtil.relsByCard.get(k)) {
+				for (long rel : planUtil.relsByCard.get(k)) {
 					ProbePlan relPlan = bestPlans.get(rel);
 					//int nrVerified = k - 1 - (int)relPlan.cost;
 					if (relPlan.cost < bestCost) {
@@ -554,13 +986,13 @@ public class SafeNaive2 extends Optimizer {
 		}
 		return probePlan;
 		/*
-		Map<BitSet, Double> cardVals = new HashMap<BitSet, Double>();
+		Map<Long, Double> cardVals = new HashMap<Long, Double>();
 		extractCard(relInfos, CostModel.UPPER_BOUNDS, true, cardVals, -1);
 		double minCost = Double.POSITIVE_INFINITY;
 		ProbePlan bestPlan = null;
 		int nrTables = queryInfo.nrTables;
 		for (int k=2; k<=nrTables; ++k) {
-			for (BitSet rel : planUtil.relsByCard.get(k)) {
+			for (long rel : planUtil.relsByCard.get(k)) {
 				if (relInfos.get(rel).relStatus == RelStatus.PENDING) {
 					ProbePlan plan = planUtil.plan(rel, cardVals).get(rel);
 					if (plan.cost < minCost) {
@@ -576,35 +1008,438 @@ public class SafeNaive2 extends Optimizer {
 		return bestPlan;
 		*/
 	}
-	@Override
-	public void optimize(QueryInfo queryInfo, RefUtil refUtil) 
-			throws Exception {
-		System.out.println("Started optimization");
-		// Initialize timing variables
-		long startMillis = System.currentTimeMillis();
-		timeout = false;
-		nrQueries = 0;
-		// Initialize utility functions
-		PlanUtil planUtil = new PlanUtil(queryInfo);
-		SQLgenerator sqlGen = new SQLgenerator(queryInfo);
-		// Generate debugging output
-		//System.out.println("All valid relations");
-		//System.out.println(planUtil.allRels.toString());
-		//System.out.println("Relations by cardinality");
-		//System.out.println(planUtil.relsByCard.toString());
-		//System.out.println(planUtil.relToSubsets.toString());
-		//System.out.println(planUtil.relToSupsets.toString());
-		// Maps each relation to optimization-related meta-data
-		relInfos = new HashMap<BitSet, RelInfo>();
-		for (BitSet rel : planUtil.allRels) {
-			// Initialize best guess from optimizer
+	/**
+	 * Selects the probe plan with maximal expected information gain
+	 * per predicted execution cost. For each pending relation, we
+	 * consider the cheapest plan generating it (predicted cost is
+	 * the summed size of scanned tables and generated relations,
+	 * based on best guesses capped by the limit). The gain of a
+	 * plan sums over all pending relations it generates: the
+	 * probability of verifying the relation (assuming its best
+	 * guess is correct if below the limit) plus one if raising
+	 * its cardinality to the expected value leads to exclusion.
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		auxiliary planning methods
+	 * @param limit			cardinality limit
+	 * @param bestCostUB	upper bound on optimal plan cost
+	 * @return				probe plan or null if none is admissible
+	 * @throws Exception
+	 */
+	ProbePlan pickInfoGainPlan(QueryInfo queryInfo, PlanUtil planUtil, 
+			int limit, double bestCostUB) throws Exception {
+		System.out.println("Trying to maximize gain per probe cost");
+		int nrRels = planUtil.rels.length;
+		double[] cardVals = new double[nrRels];
+		extractCard(planUtil, relInfos, CostModel.INFO_GAIN, 
+				false, cardVals, limit);
+		PlanTable plans = planAllTables(queryInfo, planUtil, 
+				CostModel.INFO_GAIN, cardVals, false);
+		// Calculate expected gain for each pending relation
+		double[] gain = new double[nrRels];
+		for (int relIndex=statusIndex.nextJoin(RelStatus.PENDING, 0); 
+				relIndex>=0; relIndex=statusIndex.nextJoin(
+						RelStatus.PENDING, relIndex+1)) {
+			RelInfo info = relInfos.get(planUtil.rels[relIndex]);
+			double guess = Math.max(info.cardBestGuess, info.lowerCardBound);
+			double verifyProb = guess < limit || guess <= 0 ? 1 : limit / guess;
+			double raise = Math.max(0, Math.min(guess, limit) - 
+					info.lowerCardBound);
+			boolean exclusion = info.lowerCostBound + raise > bestCostUB;
+			gain[relIndex] = verifyProb + (exclusion ? 1 : 0);
+		}
+		// Select plan with maximal gain per cost
+		double bestScore = 0;
+		int bestIndex = -1;
+		for (int relIndex=statusIndex.nextJoin(RelStatus.PENDING, 0); 
+				relIndex>=0; relIndex=statusIndex.nextJoin(
+						RelStatus.PENDING, relIndex+1)) {
+			double cost = plans.cost[relIndex];
+			if (cost != Double.POSITIVE_INFINITY) {
+				double score = planGain(plans, relIndex, gain) / (cost + 1);
+				if (score > bestScore) {
+					bestScore = score;
+					bestIndex = relIndex;
+				}
+			}
+		}
+		System.out.println("Best gain per cost:\t" + bestScore);
+		return bestIndex < 0 ? null : plans.plan(planUtil.rels[bestIndex]);
+	}
+	/**
+	 * Sums up gain over all relations generated by the best
+	 * plan for the relation with given ordinal.
+	 * 
+	 * @param plans		best plans for each relation
+	 * @param relIndex	ordinal of plan result relation
+	 * @param gain		gain for each relation ordinal
+	 * @return			summed gain over plan relations
+	 */
+	double planGain(PlanTable plans, int relIndex, double[] gain) {
+		double planGain = gain[relIndex];
+		if (plans.bestLeft[relIndex] >= 0) {
+			planGain += planGain(plans, plans.bestLeft[relIndex], gain);
+			planGain += planGain(plans, plans.bestRight[relIndex], gain);
+		}
+		return planGain;
+	}
+	/**
+	 * Reserves connections for concurrent probing in the pool of
+	 * the connector and starts threads issuing probes (if probes
+	 * are executed asynchronously).
+	 * 
+	 * @throws Exception
+	 */
+	void openProbeConnectors() throws Exception {
+		closeProbeConnectors();
+		int nrConnections = Math.max(nrProbeConnections, nrProbeSlices);
+		backend.reserve(nrConnections);
+		if (nrConnections > 1 || pipelineProbes) {
+			probeExecutor = Executors.newFixedThreadPool(nrConnections);
+		}
+	}
+	/**
+	 * Stops threads used for asynchronous probing.
+	 * 
+	 * @throws Exception
+	 */
+	void closeProbeConnectors() throws Exception {
+		if (probeExecutor != null) {
+			probeExecutor.shutdownNow();
+			probeExecutor = null;
+		}
+	}
+	/**
+	 * Selects up to the given number of probe plans that do not
+	 * overlap in the pending relations they generate. Plans are
+	 * selected one after the other as in the single-probe case
+	 * while pending relations generated by previously selected
+	 * plans are temporarily treated as unverifiable and receive
+	 * infinite cost (so later plans avoid them). The same applies
+	 * to pending relations generated by running plans (selected
+	 * plans do not overlap with them either).
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		auxiliary planning methods
+	 * @param limit			cardinality limit
+	 * @param maxNrPlans	maximal number of plans to select
+	 * @param runningPlans	plans that are currently executing
+	 * @return				list of non-overlapping probe plans
+	 * @throws Exception
+	 */
+	List<ProbePlan> pickProbePlans(QueryInfo queryInfo, PlanUtil planUtil, 
+			int limit, int maxNrPlans, List<ProbePlan> runningPlans) 
+					throws Exception {
+		List<ProbePlan> probePlans = new ArrayList<ProbePlan>();
+		reservedRels.clear();
+		// Reserve pending relations generated by running plans
+		for (ProbePlan runningPlan : runningPlans) {
+			List<Long> planRels = new ArrayList<Long>();
+			planRels(runningPlan, planRels);
+			for (long rel : planRels) {
+				if (relInfos.get(rel).relStatus == RelStatus.PENDING) {
+					statusIndex.setStatus(rel, RelStatus.UNVERIF);
+					reservedRels.add(rel);
+				}
+			}
+		}
+		while (probePlans.size() < maxNrPlans) {
+			ProbePlan probePlan = pickProbePlan(queryInfo, planUtil, limit);
+			if (probePlan == null) {
+				break;
+			}
+			// Check for overlap with previously selected plans
+			List<Long> planRels = new ArrayList<Long>();
+			planRels(probePlan, planRels);
+			List<Long> pendingRels = new ArrayList<Long>();
+			boolean overlap = false;
+			for (long rel : planRels) {
+				RelStatus status = relInfos.get(rel).relStatus;
+				if (status == RelStatus.PENDING) {
+					pendingRels.add(rel);
+				}
+				overlap |= reservedRels.contains(rel);
+			}
+			// (reserved relations have infinite cost, so the
+			// plan only overlaps if no other plan is left).
+			if (overlap || pendingRels.isEmpty() && (!probePlans.isEmpty() 
+					|| !runningPlans.isEmpty())) {
+				break;
+			}
+			probePlans.add(probePlan);
+			// Reserve pending relations generated by plan
+			for (long rel : pendingRels) {
+				statusIndex.setStatus(rel, RelStatus.UNVERIF);
+				reservedRels.add(rel);
+			}
+		}
+		// Restore status of reserved relations
+		for (long rel : reservedRels) {
+			statusIndex.setStatus(rel, RelStatus.PENDING);
+		}
+		reservedRels.clear();
+		return probePlans;
+	}
+	/**
+	 * Collects all relations generated by the given plan
+	 * (excluding base tables).
+	 * 
+	 * @param plan		a probe plan
+	 * @param planRels	collects relations generated by plan
+	 */
+	void planRels(ProbePlan plan, List<Long> planRels) {
+		if (plan instanceof CompositePlan) {
+			CompositePlan compositePlan = (CompositePlan)plan;
+			planRels.add(plan.resultRel);
+			planRels(compositePlan.leftPlan, planRels);
+			planRels(compositePlan.rightPlan, planRels);
+		}
+	}
+	/**
+	 * Selects the table on which to partition a probe plan into
+	 * slices: the table with maximal estimated cardinality among
+	 * the tables that appear in a join predicate.
+	 * 
+	 * @param probePlan	probe plan to partition
+	 * @param sqlGen	generates SQL queries for probe plans
+	 * @return			ID of table to partition or -1 if none
+	 */
+	int sliceTable(ProbePlan probePlan, SQLgenerator sqlGen) {
+		int sliceTable = -1;
+		double maxCard = -1;
+		long rel = probePlan.resultRel;
+		for (int table=RelUtil.nextTable(rel, 0); table>=0; 
+				table=RelUtil.nextTable(rel, table+1)) {
+			double card = relInfos.get(RelUtil.singleton(table)).cardBestGuess;
+			if (card > maxCard && sqlGen.joinColumn(table) != null) {
+				sliceTable = table;
+				maxCard = card;
+			}
+		}
+		return sliceTable;
+	}
+	/**
+	 * Executes the given probe query asynchronously (the query
+	 * waits for the next idle connection of the pool).
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param probePlan		probe plan to execute
+	 * @param limit			cardinality limit
+	 * @param probeSQLstem	probe query (without explain prefix)
+	 * @return				future analysis result of probe
+	 */
+	CompletableFuture<AnalyzeInfo> submitProbe(final QueryInfo queryInfo, 
+			final ProbePlan probePlan, final int limit, 
+			final String probeSQLstem) {
+		return CompletableFuture.supplyAsync(new Supplier<AnalyzeInfo>() {
+			@Override
+			public AnalyzeInfo get() {
+				try {
+					return new AnalyzeInfo(backend, 
+							queryInfo, probePlan, limit, timeoutMillis, 
+							probeSQLstem, probeTiming, probeBuffers);
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}
+		}, probeExecutor);
+	}
+	/**
+	 * Starts executing the given probe plans, returning a future
+	 * analysis result for each plan (in the same order). Plans are
+	 * executed asynchronously over separate connections if there
+	 * are several connections or if probing is pipelined.
+	 * Otherwise, the single plan is executed synchronously. If
+	 * slicing is activated, each plan is executed as a set of
+	 * concurrent slice queries whose results are merged.
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param sqlGen		generates SQL queries for probe plans
+	 * @param probePlans	probe plans to execute
+	 * @param limit			cardinality limit
+	 * @return				future analysis result for each plan
+	 * @throws Exception
+	 */
+	List<Future<AnalyzeInfo>> submitProbes(final QueryInfo queryInfo, 
+			SQLgenerator sqlGen, List<ProbePlan> probePlans, 
+			final int limit) throws Exception {
+		List<Future<AnalyzeInfo>> futures = 
+				new ArrayList<Future<AnalyzeInfo>>();
+		for (final ProbePlan probePlan : probePlans) {
+			System.out.println("Probe plan result:\t" + 
+					RelUtil.toString(probePlan.resultRel));
+			final int sliceTable = nrProbeSlices > 1 ? 
+					sliceTable(probePlan, sqlGen) : -1;
+			if (sliceTable >= 0) {
+				final List<CompletableFuture<AnalyzeInfo>> sliceFutures = 
+						new ArrayList<CompletableFuture<AnalyzeInfo>>();
+				String sliceColumn = sqlGen.joinColumn(sliceTable);
+				for (int slice=0; slice<nrProbeSlices; ++slice) {
+					String sliceFilter = backend.slicePredicate(
+							sliceColumn, nrProbeSlices, slice);
+					String sliceSQLstem = sqlGen.slicedProbeQuery(queryInfo, 
+							probePlan, limit, true, sliceTable, sliceFilter);
+					System.out.println(sliceSQLstem);
+					sliceFutures.add(submitProbe(queryInfo, 
+							probePlan, limit, sliceSQLstem));
+				}
+				CompletableFuture<?>[] sliceArray = 
+						sliceFutures.toArray(new CompletableFuture<?>[0]);
+				futures.add(CompletableFuture.allOf(sliceArray).thenApply(
+						new Function<Void, AnalyzeInfo>() {
+					@Override
+					public AnalyzeInfo apply(Void result) {
+						List<AnalyzeInfo> sliceInfos = new ArrayList<AnalyzeInfo>();
+						for (CompletableFuture<AnalyzeInfo> sliceFuture : sliceFutures) {
+							sliceInfos.add(sliceFuture.join());
+						}
+						try {
+							return new AnalyzeInfo(queryInfo, 
+									probePlan, sliceTable, sliceInfos);
+						} catch (Exception e) {
+							throw new CompletionException(e);
+						}
+					}
+				}));
+				nrQueries += nrProbeSlices;
+			} else {
+				String probeSQLstem = sqlGen.safeProbeQuery(
+						queryInfo, probePlan, limit, true);
+				System.out.println(probeSQLstem);
+				if (probeExecutor == null) {
+					CompletableFuture<AnalyzeInfo> future = 
+							new CompletableFuture<AnalyzeInfo>();
+					try {
+						future.complete(new AnalyzeInfo(backend, queryInfo, 
+								probePlan, limit, timeoutMillis, probeSQLstem, 
+								probeTiming, probeBuffers));
+					} catch (Exception e) {
+						future.completeExceptionally(e);
+					}
+					futures.add(future);
+				} else {
+					futures.add(submitProbe(queryInfo, 
+							probePlan, limit, probeSQLstem));
+				}
+				++nrQueries;
+			}
+		}
+		return futures;
+	}
+	/**
+	 * Waits until all given probes finished and returns
+	 * their analysis results. Probes that were cancelled
+	 * at the deadline yield null (and set the timeout flag).
+	 * 
+	 * @param futures	future analysis results of probes
+	 * @return			analysis result for each probe
+	 * @throws Exception
+	 */
+	List<AnalyzeInfo> collectProbes(
+			List<Future<AnalyzeInfo>> futures) throws Exception {
+		List<AnalyzeInfo> analyzeInfos = new ArrayList<AnalyzeInfo>();
+		for (Future<AnalyzeInfo> future : futures) {
+			try {
+				analyzeInfos.add(future.get());
+			} catch (ExecutionException e) {
+				if (!backend.deadlinePassed()) {
+					throw new Exception("Probe execution failed", e.getCause());
+				}
+				System.out.println("Probe cancelled at deadline");
+				analyzeInfos.add(null);
+				timeout = true;
+			}
+		}
+		return analyzeInfos;
+	}
+	/**
+	 * Filters speculatively selected probe plans, keeping only
+	 * plans that remain admissible after the last updates: plans
+	 * must generate at least one pending relation and must not
+	 * generate excluded relations or relations whose cardinality
+	 * reaches the limit (those would not be selected anymore).
+	 * 
+	 * @param probePlans	speculatively selected probe plans
+	 * @param limit			cardinality limit
+	 * @return				admissible probe plans
+	 */
+	List<ProbePlan> admissiblePlans(List<ProbePlan> probePlans, int limit) {
+		List<ProbePlan> admissible = new ArrayList<ProbePlan>();
+		for (ProbePlan probePlan : probePlans) {
+			List<Long> planRels = new ArrayList<Long>();
+			planRels(probePlan, planRels);
+			boolean pending = false;
+			boolean stale = false;
+			for (long rel : planRels) {
+				RelInfo info = relInfos.get(rel);
+				pending |= info.relStatus == RelStatus.PENDING;
+				stale |= info.relStatus == RelStatus.EXCLUDED ||
+						info.lowerCardBound >= limit;
+			}
+			if (pending && !stale) {
+				admissible.add(probePlan);
+			} else {
+				System.out.println("Discarded speculative probe for " + 
+						RelUtil.toString(probePlan.resultRel));
+			}
+		}
+		return admissible;
+	}
+	/**
+	 * Initializes meta-data for all relations from optimizer
+	 * estimates and cached values, verifies base tables, and
+	 * returns the initial cardinality limit.
+	 * 
+	 * @param queryInfo		meta-data about input query
+	 * @param planUtil		auxiliary planning methods
+	 * @param sqlGen		generates SQL queries
+	 * @param cardCache		values from previous runs (or null)
+	 * @param refUtil		information on key-foreign key constraints
+	 * @return				initial cardinality limit
+	 * @throws Exception
+	 */
+	int initRelInfos(QueryInfo queryInfo, PlanUtil planUtil, 
+			SQLgenerator sqlGen, CardCache cardCache, 
+			RefUtil refUtil) throws Exception {
+		// Collect queries for relations without exact cached values
+		List<Long> estimateRels = new ArrayList<Long>();
+		List<String> countQueries = new ArrayList<String>();
+		for (long rel : planUtil.allRels) {
+			if (cardCache == null || !cardCache.exactCards.containsKey(
+					CardCache.relKey(queryInfo, rel))) {
+				estimateRels.add(rel);
+				countQueries.add(sqlGen.countQuery(rel));
+			}
+		}
+		// Initialize best guesses from optimizer estimates
+		double[] estimates = backend.estimateRows(
+				countQueries, estimateBatchSize);
+		int nrEstimates = estimateRels.size();
+		for (int relCtr=0; relCtr<nrEstimates; ++relCtr) {
 			RelInfo info = new RelInfo();
-			String countQuery = sqlGen.countQuery(rel);
-			ExplainInfo explain = new ExplainInfo(countQuery, 
-					queryInfo.tableAliasToID, pgConnector);
-			info.cardBestGuess = explain.card;
+			info.cardBestGuess = estimates[relCtr];
+			relInfos.put(estimateRels.get(relCtr), info);
+		}
+		int nrCached = 0;
+		for (long rel : planUtil.allRels) {
+			RelInfo info = relInfos.get(rel);
+			if (info == null) {
+				info = new RelInfo();
+			}
+			String relKey = cardCache == null ? 
+					null : CardCache.relKey(queryInfo, rel);
+			// Use cardinality values from previous runs
+			if (cardCache != null && cardCache.apply(relKey, info)) {
+				if (RelUtil.cardinality(rel) == 1 && 
+						cardCache.exactCards.containsKey(relKey)) {
+					info.relStatus = RelStatus.VERIFIED;
+				}
+				++nrCached;
+			}
 			relInfos.put(rel, info);
 		}
+		System.out.println("Nr. cached relations:\t" + nrCached);
+		statusIndex = new StatusIndex(planUtil, relInfos);
 		// Determine cardinality of all base tables
 		int maxBaseCard = verifyBaseTables(queryInfo, sqlGen);
 		System.out.println("All base tables verified");
@@ -613,71 +1448,203 @@ public class SafeNaive2 extends Optimizer {
 		//int limit = maxBaseCard / 10000;
 		int limit = maxBaseCard / 50;
 		//int limit = 100000;
-		// While relations left to treat and no timeout
-		while (!getByStatus(relInfos, true, 
-				RelStatus.PENDING).isEmpty() && !timeout) {
-			// Update timeout flag
-			updateTime(startMillis);
-			// Select plan for cardinality probing
-			ProbePlan probePlan = pickProbePlan(
-					queryInfo, planUtil, limit);
-			// Have plan which may make progress?
-			if (probePlan != null) {
-				// Execute probe plan to get cardinality values
-				System.out.println("Probe plan result:\t" + probePlan.resultRel.toString());
-				String probeSQLstem = sqlGen.safeProbeQuery(
-						queryInfo, probePlan, limit, true);
-				System.out.println(probeSQLstem);
-				AnalyzeInfo analyzeInfo = new AnalyzeInfo(pgConnector, 
-						queryInfo, probePlan, limit, timeoutMillis, 
-						probeSQLstem);
-				++nrQueries;
-				System.out.println("Cardinality limit:\t" + limit);
-				System.out.println(analyzeInfo.relToCardStatus.toString());
-				// Update cardinality and cost bounds based on probe
-				updateCard(planUtil, probePlan, limit, 
-						analyzeInfo, relInfos, refUtil);
+		// Derive bounds from base table cardinalities
+		int nrDerived = propagateBounds(planUtil, relInfos, refUtil);
+		System.out.println("Nr. derived bounds:\t" + nrDerived);
+		// Verify or exclude relations based on known bounds
+		if (nrCached > 0 || nrDerived > 0) {
+			updateCost(true, planUtil, relInfos);
+			updateStatus(queryInfo, planUtil, true, limit, false);
+		}
+		return limit;
+	}
+	@Override
+	public void optimize(QueryInfo queryInfo, RefUtil refUtil) 
+			throws Exception {
+		System.out.println("Started optimization");
+		if (probePolicy != CostModel.NR_VERIFIABLE && 
+				probePolicy != CostModel.INFO_GAIN) {
+			throw new Exception("Unsupported probe policy " + probePolicy);
+		}
+		// Initialize timing variables
+		long startMillis = System.currentTimeMillis();
+		timeout = false;
+		nrQueries = 0;
+		// Variables needed after optimization (cleanup happens in any case)
+		PlanUtil planUtil;
+		CardCache cardCache;
+		String queryKey;
+		int limit;
+		boolean proceed;
+		try {
+			// Cancel queries once the time budget is exhausted
+			backend.setDeadline(startMillis + timeoutMillis);
+			// Use key constraints from catalog without reference
+			if (refUtil == null && catalogKeys) {
+				refUtil = new RefUtil(queryInfo, backend.keyCatalog());
+			}
+			// Initialize utility functions
+			planUtil = new PlanUtil(queryInfo, maxRelSize);
+			planUtil.parallelThreshold = parallelThreshold;
+			SQLgenerator sqlGen = new SQLgenerator(queryInfo);
+			// Generate debugging output
+			//System.out.println("All valid relations");
+			//System.out.println(planUtil.allRels.toString());
+			//System.out.println("Relations by cardinality");
+			//System.out.println(planUtil.relsByCard.toString());
+			//System.out.println(planUtil.relToSubsets.toString());
+			//System.out.println(planUtil.relToSupsets.toString());
+			// Maps each relation to optimization-related meta-data
+			relInfos = new HashMap<Long, RelInfo>();
+			lastPlans = new HashMap<CostModel, PlanTable>();
+			lastCards = new HashMap<CostModel, double[]>();
+			lastBounds = null;
+			changedRels.clear();
+			changedRels.set(0, planUtil.rels.length);
+			lastCostUB = Double.POSITIVE_INFINITY;
+			cardCache = cardCachePath == null ? 
+					null : CardCache.load(cardCachePath);
+			// Resume from checkpoint of an interrupted run if possible
+			queryKey = Checkpoint.queryKey(queryInfo);
+			Checkpoint checkpoint = checkpointPath == null ? 
+					null : Checkpoint.load(checkpointPath);
+			if (checkpoint != null && (!checkpoint.queryKey.equals(queryKey) ||
+					checkpoint.maxRelSize != maxRelSize)) {
+				System.out.println("Ignoring checkpoint for other query");
+				checkpoint = null;
+			}
+			if (checkpoint != null) {
+				System.out.println("Resuming from checkpoint");
+				relInfos = checkpoint.relInfos;
+				statusIndex = new StatusIndex(planUtil, relInfos);
+				limit = checkpoint.limit;
+				nrQueries = checkpoint.nrQueries;
+				startMillis -= checkpoint.totalMillis;
+				backend.setDeadline(startMillis + timeoutMillis);
 				updateCost(true, planUtil, relInfos);
-				// Update relation status
-				updateStatus(queryInfo, planUtil, true, limit, false);
-				//System.out.println(relInfos.toString());
-				int nrPending = getByStatus(relInfos, true, 
-						RelStatus.PENDING).size();
-				int nrUnverif = getByStatus(relInfos, true,
-						RelStatus.UNVERIF).size();
-				System.out.println("Nr. pending:\t" + nrPending);
-				System.out.println("Nr. unverif:\t" + nrUnverif);
-				System.out.println("Total millis:\t" + totalMillis);
-				/*
-				System.out.println(getPending(relInfos, true).toString());
-				for (BitSet pendingRel : getPending(relInfos, true)) {
-					System.out.println("Decompositions for " + pendingRel.toString());
-					System.out.println(
-							planUtil.relToSubsets.get(pendingRel).toString());
+			} else {
+				limit = initRelInfos(queryInfo, planUtil, 
+						sqlGen, cardCache, refUtil);
+			}
+			long checkpointStart = System.currentTimeMillis();
+			// Open connections for concurrent probing
+			openProbeConnectors();
+			// Probe plans selected while previous probes were running
+			List<ProbePlan> nextPlans = new ArrayList<ProbePlan>();
+			List<ProbePlan> noPlans = new ArrayList<ProbePlan>();
+			// While relations left to treat and no timeout or stop
+			proceed = true;
+			while (statusIndex.count(RelStatus.PENDING) > 0 && 
+					!timeout && proceed) {
+				// Update timeout flag
+				updateTime(startMillis);
+				// Select plans for cardinality probing
+				List<ProbePlan> probePlans = admissiblePlans(nextPlans, limit);
+				if (probePlans.isEmpty()) {
+					probePlans = pickProbePlans(queryInfo, planUtil, 
+							limit, nrProbeConnections, noPlans);
 				}
-				*/
-				/*
-				// Decrease limit considering optimal plan cost
-				double bestCostUB = bestCostUB(queryInfo, planUtil);
-				limit = Math.min(limit, (int)Math.ceil(bestCostUB));
-				*/				
-			}
-			if (probePlan == null || getByStatus(relInfos, 
-					true, RelStatus.PENDING).isEmpty()) {
-			// Do we need to increase cardinality limit?
-			//if (getPending(relInfos, true).isEmpty()) {
-				limit *= 10;
-				System.out.println("Limit update to " + limit);
-				// See whether new relations are activated
-				updateStatus(queryInfo, planUtil, true, limit, true);
-			}
-		} // until optimization finished
+				nextPlans = noPlans;
+				// Have plans which may make progress?
+				if (!probePlans.isEmpty()) {
+					// Execute probe plans to get cardinality values
+					List<Future<AnalyzeInfo>> futures = submitProbes(
+							queryInfo, sqlGen, probePlans, limit);
+					// Select next plans while probes are running
+					if (pipelineProbes) {
+						nextPlans = pickProbePlans(queryInfo, planUtil, 
+								limit, nrProbeConnections, probePlans);
+					}
+					List<AnalyzeInfo> analyzeInfos = collectProbes(futures);
+					System.out.println("Cardinality limit:\t" + limit);
+					// Update cardinality bounds based on completed probes
+					int nrProbes = probePlans.size();
+					for (int probeCtr=0; probeCtr<nrProbes; ++probeCtr) {
+						AnalyzeInfo analyzeInfo = analyzeInfos.get(probeCtr);
+						if (analyzeInfo == null) {
+							continue;
+						}
+						System.out.println(analyzeInfo.relToCardStatus.toString());
+						updateCard(planUtil, probePlans.get(probeCtr), limit, 
+								analyzeInfo, relInfos, refUtil);
+					}
+					// Update cost bounds and relation status
+					updateCost(true, planUtil, relInfos);
+					updateStatus(queryInfo, planUtil, true, limit, false);
+					//System.out.println(relInfos.toString());
+					int nrPending = statusIndex.count(RelStatus.PENDING);
+					int nrUnverif = statusIndex.count(RelStatus.UNVERIF);
+					System.out.println("Nr. pending:\t" + nrPending);
+					System.out.println("Nr. unverif:\t" + nrUnverif);
+					System.out.println("Total millis:\t" + totalMillis);
+					/*
+					System.out.println(getPending(relInfos, true).toString());
+					for (BitSet pendingRel : getPending(relInfos, true)) {
+						System.out.println("Decompositions for " + pendingRel.toString());
+						System.out.println(
+								planUtil.relToSubsets.get(pendingRel).toString());
+					}
+					*/
+					/*
+					// Decrease limit considering optimal plan cost
+					double bestCostUB = bestCostUB(queryInfo, planUtil);
+					limit = Math.min(limit, (int)Math.ceil(bestCostUB));
+					*/				
+				}
+				if (probePlans.isEmpty() || 
+						statusIndex.count(RelStatus.PENDING) == 0) {
+				// Do we need to increase cardinality limit?
+				//if (getPending(relInfos, true).isEmpty()) {
+					limit *= 10;
+					nextPlans = noPlans;
+					System.out.println("Limit update to " + limit);
+					// See whether new relations are activated
+					updateStatus(queryInfo, planUtil, true, limit, true);
+				}
+				// Report progress after each round
+				proceed = reportProgress(queryInfo, planUtil, limit, startMillis);
+				// Periodically store optimizer state
+				if (checkpointPath != null && System.currentTimeMillis() - 
+						checkpointStart >= checkpointMillis) {
+					updateTime(startMillis);
+					new Checkpoint(queryKey, maxRelSize, relInfos, limit, 
+							nrQueries, totalMillis).save(checkpointPath);
+					checkpointStart = System.currentTimeMillis();
+					System.out.println("Stored checkpoint");
+				}
+			} // until optimization finished
+		} finally {
+			// Stop probing threads and query watchdog even on failure
+			closeProbeConnectors();
+			backend.clearDeadline();
+		}
+		// Checkpoints are only needed for unfinished runs
+		if (checkpointPath != null) {
+			if (timeout || !proceed) {
+				updateTime(startMillis);
+				new Checkpoint(queryKey, maxRelSize, relInfos, limit, 
+						nrQueries, totalMillis).save(checkpointPath);
+			} else {
+				new File(checkpointPath).delete();
+			}
+		}
+		// Store cardinality values for future runs
+		if (cardCache != null) {
+			for (long rel : planUtil.allRels) {
+				RelInfo info = relInfos.get(rel);
+				boolean exact = info.lowerCardBound >= info.upperCardBound ||
+						RelUtil.cardinality(rel) == 1 && 
+						info.relStatus == RelStatus.VERIFIED;
+				cardCache.record(CardCache.relKey(queryInfo, rel), info, exact);
+			}
+			cardCache.save(cardCachePath);
+		}
 		// Output cardinality of all relations
 		System.out.println("Info on all relations by cardinality:");
 		int nrTables = queryInfo.nrTables;
 		for (int k=1; k<=nrTables; ++k) {
-			Set<BitSet> rels = planUtil.relsByCard.get(k);
-			for (BitSet rel : rels) {
+			Set<Long> rels = planUtil.relsByCard.get(k);
+			for (long rel : rels) {
 				RelInfo info = relInfos.get(rel);
 				Set<String> aliasSet = RelUtil.aliasSet(
 						rel, queryInfo.tableIDtoAlias);
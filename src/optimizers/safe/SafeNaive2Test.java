@@ -0,0 +1,193 @@
+package optimizers.safe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.rowset.RowSetProvider;
+
+import org.junit.jupiter.api.Test;
+
+import SQLtools.QueryInfo;
+import common.PlanTable;
+import common.PlanUtil;
+import common.RelUtil;
+import common.plans.ProbePlan;
+import pgConnector.KeyCatalog;
+import pgConnector.ProbeBackend;
+import reference.RefUtil;
+
+class SafeNaive2Test {
+
+	/**
+	 * Initializes an optimizer for a chain query whose base
+	 * tables are verified and whose join relations are pending.
+	 * 
+	 * @param queryInfo	chain query over four tables
+	 * @param planUtil	plan space for chain query
+	 * @return			optimizer with initialized relation meta-data
+	 * @throws Exception
+	 */
+	SafeNaive2 chainOptimizer(QueryInfo queryInfo, 
+			PlanUtil planUtil) throws Exception {
+		SafeNaive2 optimizer = new SafeNaive2(1000, null);
+		optimizer.relInfos = new HashMap<Long, RelInfo>();
+		optimizer.lastPlans = new HashMap<CostModel, PlanTable>();
+		optimizer.lastCards = new HashMap<CostModel, double[]>();
+		for (long rel : planUtil.allRels) {
+			RelInfo info = new RelInfo();
+			info.cardBestGuess = 10;
+			if (RelUtil.cardinality(rel) == 1) {
+				info.lowerCardBound = 10;
+				info.upperCardBound = 10;
+				info.relStatus = RelStatus.VERIFIED;
+			}
+			optimizer.relInfos.put(rel, info);
+		}
+		optimizer.statusIndex = new StatusIndex(planUtil, optimizer.relInfos);
+		return optimizer;
+	}
+
+	@Test
+	void test() throws Exception {
+		// Chain query with pending join relations
+		QueryInfo queryInfo = new QueryInfo("SELECT * FROM " + 
+				"a AS a, b AS b, c AS c, d AS d WHERE " + 
+				"a.id = b.id AND b.id = c.id AND c.id = d.id;");
+		PlanUtil planUtil = new PlanUtil(queryInfo);
+		SafeNaive2 optimizer = chainOptimizer(queryInfo, planUtil);
+		// Several plans with disjoint pending relations are selected
+		List<ProbePlan> probePlans = optimizer.pickProbePlans(queryInfo, 
+				planUtil, 100, 3, new ArrayList<ProbePlan>());
+		assertTrue(probePlans.size() > 1);
+		Set<Long> generatedRels = new HashSet<Long>();
+		for (ProbePlan probePlan : probePlans) {
+			List<Long> planRels = new ArrayList<Long>();
+			optimizer.planRels(probePlan, planRels);
+			for (long rel : planRels) {
+				assertTrue(generatedRels.add(rel));
+			}
+		}
+		// Reserved relations are pending again after selection
+		for (long rel : generatedRels) {
+			assertEquals(RelStatus.PENDING, 
+					optimizer.relInfos.get(rel).relStatus);
+		}
+		assertTrue(optimizer.reservedRels.isEmpty());
+		// Only relations with changed bounds are verified
+		optimizer.updateCost(true, planUtil, optimizer.relInfos);
+		optimizer.updateStatus(queryInfo, planUtil, true, 100, false);
+		long abRel = RelUtil.singleton(0) | RelUtil.singleton(1);
+		long cdRel = RelUtil.singleton(2) | RelUtil.singleton(3);
+		for (long rel : new long[] {abRel, cdRel}) {
+			RelInfo info = optimizer.relInfos.get(rel);
+			info.lowerCardBound = 10;
+			info.upperCardBound = 10;
+		}
+		optimizer.changedRels.set(planUtil.index(abRel));
+		optimizer.updateStatus(queryInfo, planUtil, true, 100, false);
+		assertEquals(RelStatus.VERIFIED, 
+				optimizer.relInfos.get(abRel).relStatus);
+		assertEquals(RelStatus.PENDING, 
+				optimizer.relInfos.get(cdRel).relStatus);
+		assertTrue(optimizer.changedRels.isEmpty());
+		// All relations are updated after a limit change
+		optimizer.updateStatus(queryInfo, planUtil, true, 1000, true);
+		assertEquals(RelStatus.VERIFIED, 
+				optimizer.relInfos.get(cdRel).relStatus);
+	}
+
+
+	/**
+	 * Returns key constraints for the given query without database
+	 * access: the column id is the unique key of the given tables.
+	 * 
+	 * @param queryInfo		query whose tables to consider
+	 * @param keyTables		names of tables keyed on column id
+	 * @return				key constraints mapped onto query
+	 * @throws Exception
+	 */
+	RefUtil idKeys(QueryInfo queryInfo, String... keyTables) throws Exception {
+		// Catalog queries of the backend return no rows
+		ProbeBackend backend = (ProbeBackend)Proxy.newProxyInstance(
+				ProbeBackend.class.getClassLoader(), 
+				new Class<?>[] {ProbeBackend.class}, 
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, 
+							Object[] args) throws Throwable {
+						return RowSetProvider.newFactory().createCachedRowSet();
+					}
+				});
+		KeyCatalog keyCatalog = new KeyCatalog(backend, "", null);
+		for (String table : keyTables) {
+			keyCatalog.uniqueKeys.put(table, new HashSet<Set<String>>(
+					Arrays.asList(new HashSet<String>(Arrays.asList("id")))));
+		}
+		return new RefUtil(queryInfo, keyCatalog);
+	}
+
+	@Test
+	void testPropagateBounds() throws Exception {
+		QueryInfo queryInfo = new QueryInfo("SELECT * FROM " + 
+				"a AS a, b AS b, c AS c, d AS d WHERE " + 
+				"a.id = b.id AND b.id = c.id AND c.id = d.id;");
+		PlanUtil planUtil = new PlanUtil(queryInfo);
+		long a = RelUtil.singleton(queryInfo.tableAliasToID.get("a"));
+		long b = RelUtil.singleton(queryInfo.tableAliasToID.get("b"));
+		long c = RelUtil.singleton(queryInfo.tableAliasToID.get("c"));
+		long d = RelUtil.singleton(queryInfo.tableAliasToID.get("d"));
+		// Upper bounds are products of operand bounds
+		SafeNaive2 optimizer = chainOptimizer(queryInfo, planUtil);
+		Map<Long, RelInfo> relInfos = optimizer.relInfos;
+		assertTrue(optimizer.propagateBounds(planUtil, relInfos, null) > 0);
+		assertEquals(100, relInfos.get(a|b).upperCardBound, 1E-10);
+		assertEquals(1000, relInfos.get(a|b|c).upperCardBound, 1E-10);
+		assertEquals(10000, relInfos.get(a|b|c|d).upperCardBound, 1E-10);
+		assertEquals(0, optimizer.propagateBounds(planUtil, relInfos, null));
+		// Lower bounds are derived top-down (base tables unchanged)
+		relInfos.get(a|b|c|d).lowerCardBound = 500;
+		assertTrue(optimizer.propagateBounds(planUtil, relInfos, null) > 0);
+		assertEquals(50, relInfos.get(a|b|c).lowerCardBound, 1E-10);
+		assertEquals(50, relInfos.get(b|c|d).lowerCardBound, 1E-10);
+		assertEquals(5, relInfos.get(a|b).lowerCardBound, 1E-10);
+		assertEquals(5, relInfos.get(c|d).lowerCardBound, 1E-10);
+		assertEquals(10, relInfos.get(a).lowerCardBound, 1E-10);
+		assertTrue(optimizer.changedRels.get(planUtil.index(a|b)));
+		// Joins with a key table are capped by the other operand
+		optimizer = chainOptimizer(queryInfo, planUtil);
+		relInfos = optimizer.relInfos;
+		relInfos.get(b).upperCardBound = 5;
+		relInfos.get(b).lowerCardBound = 5;
+		RefUtil refUtil = idKeys(queryInfo, "a");
+		assertTrue(refUtil.onForeignSide(b, a));
+		optimizer.propagateBounds(planUtil, relInfos, refUtil);
+		assertEquals(5, relInfos.get(a|b).upperCardBound, 1E-10);
+		assertEquals(50, relInfos.get(b|c).upperCardBound, 1E-10);
+		assertEquals(50, relInfos.get(a|b|c).upperCardBound, 1E-10);
+		// Result of key join has at least as many rows as foreign side
+		relInfos.get(a|b|c).lowerCardBound = 20;
+		optimizer.propagateBounds(planUtil, relInfos, refUtil);
+		assertEquals(20, relInfos.get(b|c).lowerCardBound, 1E-10);
+		// Joins with an empty operand are empty
+		optimizer = chainOptimizer(queryInfo, planUtil);
+		relInfos = optimizer.relInfos;
+		relInfos.get(c).upperCardBound = 0;
+		relInfos.get(c).lowerCardBound = 0;
+		optimizer.propagateBounds(planUtil, relInfos, null);
+		assertEquals(0, relInfos.get(b|c).upperCardBound, 1E-10);
+		assertEquals(0, relInfos.get(a|b|c|d).upperCardBound, 1E-10);
+		assertEquals(100, relInfos.get(a|b).upperCardBound, 1E-10);
+		assertEquals(0, relInfos.get(a|b|c|d).cardBestGuess, 1E-10);
+	}
+
+}
@@ -0,0 +1,157 @@
+package optimizers.safe;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import common.PlanUtil;
+
+/**
+ * Indexes relations by their status: keeps for each status the
+ * set of relation ordinals with that status and the number of
+ * such relations (excluding base tables). Relation status must
+ * be changed via this index to keep it consistent. Since ordinals
+ * are ordered by relation cardinality, iterating over the set
+ * of relations with a given status yields smaller relations
+ * first.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class StatusIndex {
+	/**
+	 * Defines the plan space and relation ordinals.
+	 */
+	public final PlanUtil planUtil;
+	/**
+	 * Maps relations to meta-data (including status).
+	 */
+	final Map<Long, RelInfo> relInfos;
+	/**
+	 * Status of the relation with given ordinal.
+	 */
+	final RelStatus[] statuses;
+	/**
+	 * Contains for each status (by status ordinal) the
+	 * ordinals of all relations with that status.
+	 */
+	final BitSet[] relsByStatus;
+	/**
+	 * Contains for each status (by status ordinal) the number
+	 * of relations with that status, excluding base tables.
+	 */
+	final int[] nrsByStatus;
+	/**
+	 * Ordinal of the first relation joining multiple tables.
+	 */
+	public final int firstJoin;
+	/**
+	 * Indexes the current status of all relations.
+	 * 
+	 * @param planUtil	defines relation ordinals
+	 * @param relInfos	maps relations to meta-data
+	 */
+	public StatusIndex(PlanUtil planUtil, Map<Long, RelInfo> relInfos) {
+		this.planUtil = planUtil;
+		this.relInfos = relInfos;
+		int nrRels = planUtil.rels.length;
+		int nrStatus = RelStatus.values().length;
+		this.statuses = new RelStatus[nrRels];
+		this.relsByStatus = new BitSet[nrStatus];
+		this.nrsByStatus = new int[nrStatus];
+		this.firstJoin = planUtil.levelStart[2];
+		for (int statusCtr=0; statusCtr<nrStatus; ++statusCtr) {
+			relsByStatus[statusCtr] = new BitSet(nrRels);
+		}
+		for (int relIndex=0; relIndex<nrRels; ++relIndex) {
+			RelStatus status = relInfos.get(planUtil.rels[relIndex]).relStatus;
+			statuses[relIndex] = status;
+			relsByStatus[status.ordinal()].set(relIndex);
+			if (relIndex >= firstJoin) {
+				++nrsByStatus[status.ordinal()];
+			}
+		}
+	}
+	/**
+	 * Returns the status of the relation with given ordinal.
+	 * 
+	 * @param relIndex	relation ordinal
+	 * @return			current relation status
+	 */
+	public RelStatus status(int relIndex) {
+		return statuses[relIndex];
+	}
+	/**
+	 * Changes the status of the given relation.
+	 * 
+	 * @param rel		a relation from the plan space
+	 * @param status	new relation status
+	 */
+	public void setStatus(long rel, RelStatus status) {
+		int relIndex = planUtil.index(rel);
+		RelStatus oldStatus = statuses[relIndex];
+		relInfos.get(rel).relStatus = status;
+		if (oldStatus != status) {
+			statuses[relIndex] = status;
+			relsByStatus[oldStatus.ordinal()].clear(relIndex);
+			relsByStatus[status.ordinal()].set(relIndex);
+			if (relIndex >= firstJoin) {
+				--nrsByStatus[oldStatus.ordinal()];
+				++nrsByStatus[status.ordinal()];
+			}
+		}
+	}
+	/**
+	 * Returns the number of relations joining multiple
+	 * tables with the given status.
+	 * 
+	 * @param status	relation status
+	 * @return			number of join relations with status
+	 */
+	public int count(RelStatus status) {
+		return nrsByStatus[status.ordinal()];
+	}
+	/**
+	 * Returns the ordinals of all relations with given status
+	 * (the returned set is maintained by the index and must
+	 * not be modified).
+	 * 
+	 * @param status	relation status
+	 * @return			ordinals of relations with status
+	 */
+	public BitSet rels(RelStatus status) {
+		return relsByStatus[status.ordinal()];
+	}
+	/**
+	 * Returns the ordinal of the first relation joining multiple
+	 * tables with the given status, starting from (and including)
+	 * the given ordinal, or -1 if no such relation exists.
+	 * 
+	 * @param status	relation status
+	 * @param from		first ordinal to consider
+	 * @return			ordinal of next join relation or -1
+	 */
+	public int nextJoin(RelStatus status, int from) {
+		return relsByStatus[status.ordinal()].nextSetBit(
+				Math.max(from, firstJoin));
+	}
+	/**
+	 * Returns all relations with the given status in
+	 * cardinality order.
+	 * 
+	 * @param status			relation status
+	 * @param ignoreBaseTables	whether to exclude base tables
+	 * @return					list of relations with status
+	 */
+	public List<Long> list(RelStatus status, boolean ignoreBaseTables) {
+		List<Long> rels = new ArrayList<Long>();
+		BitSet statusRels = relsByStatus[status.ordinal()];
+		int start = ignoreBaseTables ? firstJoin : 0;
+		for (int relIndex=statusRels.nextSetBit(start); relIndex>=0;
+				relIndex=statusRels.nextSetBit(relIndex+1)) {
+			rels.add(planUtil.rels[relIndex]);
+		}
+		return rels;
+	}
+}
@@ -1,37 +1,38 @@
 package pgConnector;
 
-import java.sql.ResultSet;
-import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 import SQLtools.QueryInfo;
+import common.RelUtil;
 import common.plans.CompositePlan;
 import common.plans.ProbePlan;
 
 /**
  * Extracts information from the result of an
- * explain-analyze query.
+ * explain-analyze query (in JSON format).
  * 
  * @author immanueltrummer
  *
  */
 public class AnalyzeInfo {
 	/**
-	 * Connection to the database.
+	 * Database system executing the probes.
 	 */
-	public final PgConnector pgConnector;
+	public final ProbeBackend backend;
 	/**
 	 * Contains information about an input query.
 	 */
 	public final QueryInfo queryInfo;
+	/**
+	 * Query tables joined by the probing plan.
+	 */
+	public final long probeRel;
 	/**
 	 * Maps intermediate result relations to a cardinality
 	 * that was extracted from the analysis query result -
@@ -40,227 +41,242 @@ public class AnalyzeInfo {
 	 * A cardinality of -1 indicates a plan branch
 	 * that was never executed.
 	 */
-	public final Map<BitSet, Integer> relToCard;
+	public final Map<Long, Integer> relToCard;
 	/**
 	 * Maps each relation to cardinality status, indicating
 	 * whether the extracted value is exact or a lower bound.
 	 */
-	public final Map<BitSet, CardStatus> relToCardStatus;
+	public final Map<Long, CardStatus> relToCardStatus;
+	/**
+	 * Number of shared buffer blocks found in cache while
+	 * executing the probe (only collected if buffer usage
+	 * is requested, zero otherwise).
+	 */
+	public long sharedHitBlocks = 0;
+	/**
+	 * Number of shared buffer blocks read from disk while
+	 * executing the probe (only collected if buffer usage
+	 * is requested, zero otherwise).
+	 */
+	public long sharedReadBlocks = 0;
+	/**
+	 * Creates parsers for explain-analyze results (thread-safe).
+	 */
+	static final JsonFactory jsonFactory = new JsonFactory();
 	/**
 	 * Executes explain-analyze query on the database
-	 * and extract properties from query result.
+	 * and extract properties from query result (without
+	 * measuring time or buffer usage per plan node).
 	 * 
-	 * @param pgConnector	connection to the database
+	 * @param backend		database system executing the probe
 	 * @param queryInfo		information about the input query
 	 * @param probePlan		probing plan behind sub-query
 	 * @param cardLimit		cardinality limit for each result
 	 * @param timeoutMillis	number of milliseconds until timeout
 	 * @param subQuery		a sub-query to analyze
 	 */
-	public AnalyzeInfo(PgConnector pgConnector, QueryInfo queryInfo, 
+	public AnalyzeInfo(ProbeBackend backend, QueryInfo queryInfo, 
 			ProbePlan probePlan, int cardLimit, int timeoutMillis, 
 			String subQuery) throws Exception {
-		this.pgConnector = pgConnector;
+		this(backend, queryInfo, probePlan, cardLimit, 
+				timeoutMillis, subQuery, false, false);
+	}
+	/**
+	 * Executes explain-analyze query on the database
+	 * and extract properties from query result. Row
+	 * counts are extracted in the same way, whether or
+	 * not time and buffer usage are measured.
+	 * 
+	 * @param backend		database system executing the probe
+	 * @param queryInfo		information about the input query
+	 * @param probePlan		probing plan behind sub-query
+	 * @param cardLimit		cardinality limit for each result
+	 * @param timeoutMillis	number of milliseconds until timeout
+	 * @param subQuery		a sub-query to analyze
+	 * @param timing		whether to measure time per plan node
+	 * @param buffers		whether to measure buffer usage
+	 */
+	public AnalyzeInfo(ProbeBackend backend, QueryInfo queryInfo, 
+			ProbePlan probePlan, int cardLimit, int timeoutMillis, 
+			String subQuery, boolean timing, boolean buffers) throws Exception {
+		this.backend = backend;
 		this.queryInfo = queryInfo;
-		// Issue explain-analyze query to database
-		String analyzeQuery = "EXPLAIN ANALYZE " + subQuery;
-		ResultSet result = pgConnector.query(analyzeQuery, 
-				timeoutMillis);
-		List<String> resultLines = new ArrayList<String>();
-		while (result.next()) {
-			resultLines.add(result.getString(1));
-		}
+		this.probeRel = probePlan.resultRel;
 		// Extract intermediate result cardinalities
-		relToCard = new HashMap<BitSet, Integer>();
-		int nrLines = resultLines.size();
-		// (we do not consider the last two lines showing
-		// planning time and execution time).
-		extractInfoRec(resultLines, 0, nrLines-3);
+		relToCard = new HashMap<Long, Integer>();
+		backend.analyze(subQuery, timeoutMillis, timing, buffers, this);
 		System.out.println("After extractions:\t" + relToCard.toString());
-		// Verify consistency with different extraction method
-		List<Integer> rowCounts = extractRowCounts(resultLines, true);
-		Set<Integer> rowCountSet = new HashSet<Integer>();
-		Set<Integer> rowCountSet2 = new HashSet<Integer>();
-		rowCountSet.addAll(rowCounts);
-		rowCountSet2.addAll(relToCard.values());
-		if (!rowCountSet.equals(rowCountSet2)) {
-			System.out.println("Extracted by old method:\t" + rowCountSet.toString());
-			System.out.println("Extracted by new method:\t" + rowCountSet2.toString());
-			throw new Exception("Inconsistent extractions");
+		if (buffers) {
+			System.out.println("Shared hit blocks:\t" + sharedHitBlocks + 
+					"\tShared read blocks:\t" + sharedReadBlocks);
 		}
 		// Verify consistency with probing plan
-		for (BitSet rel : relToCard.keySet()) {
+		for (long rel : relToCard.keySet()) {
 			if (!probePlan.findRel(rel)) {
 				throw new Exception("Extracted cardinality for relation " +
-						rel.toString() + " but not found in probe plan");
+						RelUtil.toString(rel) + " but not found in probe plan");
 			}
 		}
 		// Identify guaranteed final cardinality numbers
-		this.relToCardStatus = new HashMap<BitSet, CardStatus>();
+		this.relToCardStatus = new HashMap<Long, CardStatus>();
 		verifyRec(probePlan, cardLimit);
 	}
 	/**
-	 * Extracts a list of actual row counts measured for
-	 * intermediate results during the execution of a
-	 * query (via Postgres' explain analyze command).
+	 * Combines the analysis results of probes on disjoint slices
+	 * of one table (all slices use the same probe plan). Counts
+	 * of relations joining the sliced table add up over slices,
+	 * such counts are exact if they are exact for each slice and
+	 * lower bounds otherwise (unknown counts of single slices
+	 * are treated as zero). Other relations are generated in
+	 * the same way by each slice - their cardinality is exact
+	 * if it is exact for at least one slice.
 	 * 
-	 * @param resultLines		lines of analyze query result in order
-	 * @param ignoreBaseTables	whether not to extract counts for scans
-	 * 							(index or sequential) on base tables.
-	 * @return					a list of actual row counts -
-	 * 							row count -1 indicates that the
-	 * 							corresponding result was never
-	 * 							generated - the first row count
-	 * 							is refers to the query result. 
+	 * @param queryInfo		information about the input query
+	 * @param probePlan		probing plan used by all slices
+	 * @param sliceTable	ID of table that was partitioned
+	 * @param sliceInfos	analysis results for each slice
+	 * @throws Exception
 	 */
-	public List<Integer> extractRowCounts(List<String> resultLines, 
-			boolean ignoreBaseTables) throws Exception {
-		// Filter out lines that refer to base tables
-		StringBuilder filterBuilder = new StringBuilder();
-		for (String line : resultLines) {
-			if (!ignoreBaseTables || line.contains("->  Limit") ||
-					line.startsWith("Limit")) {
-				//System.out.println("Recognized limit");
-				filterBuilder.append(line);
-			}
+	public AnalyzeInfo(QueryInfo queryInfo, ProbePlan probePlan, 
+			int sliceTable, List<AnalyzeInfo> sliceInfos) throws Exception {
+		this.backend = sliceInfos.get(0).backend;
+		this.queryInfo = queryInfo;
+		this.probeRel = probePlan.resultRel;
+		this.relToCard = new HashMap<Long, Integer>();
+		this.relToCardStatus = new HashMap<Long, CardStatus>();
+		AnalyzeInfo firstInfo = sliceInfos.get(0);
+		for (AnalyzeInfo sliceInfo : sliceInfos) {
+			sharedHitBlocks += sliceInfo.sharedHitBlocks;
+			sharedReadBlocks += sliceInfo.sharedReadBlocks;
 		}
-		String filteredAnalyzeResult = filterBuilder.toString();
-		// Prepare extraction patterns
-		Pattern actualMeasurePattern = Pattern.compile(
-				"\\(actual\\stime=[0-9|\\.]*\\srows=\\d+\\s[^\\s]*\\)|" +
-						"\\(never\\sexecuted\\)");
-		Pattern rowCountPattern = Pattern.compile(
-				"rows=\\d+[\\s|\\)]");
-		// Extract actual row counts
-		Matcher actualMeasureMatcher = 
-				actualMeasurePattern.matcher(filteredAnalyzeResult);
-		List<Integer> actualRowCounts = new ArrayList<Integer>();
-		while (actualMeasureMatcher.find()) {
-			String actualMeasure = actualMeasureMatcher.group();
-			if (actualMeasure.equals("(never executed)")) {
-				actualRowCounts.add(-1);
-			} else {
-				Matcher rowCountMatcher = 
-						rowCountPattern.matcher(actualMeasure);
-				if (!rowCountMatcher.find()) {
-					throw new Exception("Error matching row count!");
+		for (long rel : firstInfo.relToCardStatus.keySet()) {
+			// Base tables have no extracted cardinality
+			if (!firstInfo.relToCard.containsKey(rel)) {
+				relToCardStatus.put(rel, firstInfo.relToCardStatus.get(rel));
+				continue;
+			}
+			boolean sliced = RelUtil.contains(rel, sliceTable);
+			int card = -1;
+			int nrExact = 0;
+			int nrUnknown = 0;
+			for (AnalyzeInfo sliceInfo : sliceInfos) {
+				CardStatus sliceStatus = sliceInfo.relToCardStatus.get(rel);
+				Integer sliceCard = sliceInfo.relToCard.get(rel);
+				if (sliceStatus == CardStatus.UNKNOWN || sliceCard == null) {
+					++nrUnknown;
+				} else if (sliced) {
+					card = Math.max(card, 0) + sliceCard;
+				} else if (sliceStatus == CardStatus.EXACT) {
+					card = sliceCard;
+				} else if (nrExact == 0) {
+					card = Math.max(card, sliceCard);
 				}
-				String rowCount = rowCountMatcher.group();
-				String count = rowCount.substring(5).trim();
-				actualRowCounts.add(Integer.parseInt(count));
+				nrExact += sliceStatus == CardStatus.EXACT ? 1 : 0;
+			}
+			relToCard.put(rel, card);
+			CardStatus cardStatus = CardStatus.LOWER_BOUND;
+			if (nrUnknown == sliceInfos.size()) {
+				cardStatus = CardStatus.UNKNOWN;
+			} else if (sliced ? nrExact == sliceInfos.size() : nrExact > 0) {
+				cardStatus = CardStatus.EXACT;
 			}
+			relToCardStatus.put(rel, cardStatus);
 		}
-		return actualRowCounts;
+		System.out.println("After merging slices:\t" + relToCard.toString());
 	}
 	/**
-	 * Returns the number of leading white spaces
-	 * for a given string.
+	 * Returns the explain command used for probes: time per
+	 * plan node is only measured if requested (avoiding the
+	 * overhead of reading the clock for each row).
 	 * 
-	 * @param line	string to search for white spaces
-	 * @return		count of leading white spaces
+	 * @param timing	whether to measure time per plan node
+	 * @param buffers	whether to measure buffer usage
+	 * @return			explain prefix for probe queries
 	 */
-	int countLeadingSpaces(String line) {
-		int spaceCtr = 0;
-		while (spaceCtr < line.length() && line.charAt(spaceCtr) == ' ') {
-			++spaceCtr;
-		}
-		return spaceCtr;
+	public static String analyzePrefix(boolean timing, boolean buffers) {
+		return "EXPLAIN (ANALYZE, TIMING " + (timing ? "ON" : "OFF") + 
+				(buffers ? ", BUFFERS" : "") + ", FORMAT JSON) ";
 	}
 	/**
-	 * Extracts row counts and associated intermediate result
-	 * relations from parts of an explain-analyze query result.
+	 * Extracts row counts of limit nodes and associated
+	 * intermediate result relations from the result of a
+	 * Postgres explain-analyze query in JSON format (the result
+	 * is parsed in one pass without materializing the plan).
 	 * 
-	 * @param resultLines	lines of explain-analyze query result
-	 * @param start			index of first line to consider
-	 * @param end			index of last line to consider
-	 * @return				relations scanned in current scope
+	 * @param analyzeResult	explain-analyze result in JSON
 	 * @throws Exception
 	 */
-	BitSet extractInfoRec(List<String> resultLines, int start, int end) 
-			throws Exception {
-		//System.out.println("Start:\t" + start + "\tEnd:\t" + end);
-		// Check for end of recursion
-		if (start > end) {
-			return new BitSet();
+	void extractInfo(String analyzeResult) throws Exception {
+		JsonParser parser = jsonFactory.createParser(analyzeResult);
+		// Result is an array with one object containing the plan
+		if (parser.nextToken() != JsonToken.START_ARRAY || 
+				parser.nextToken() != JsonToken.START_OBJECT) {
+			throw new Exception("Unexpected analysis result " + analyzeResult);
 		}
-		// Check whether start line describes new plan node
-		String startLine = resultLines.get(start);
-		int startIndent = countLeadingSpaces(startLine);
-		boolean newNode = startLine.matches("\\s*->.*") || 
-				startIndent == 0;
-		// Find out what relation this node generates
-		BitSet thisRel = new BitSet();
-		if (newNode) {
-			// Perform one or two recursive invocations
-			String siblingIndicator = String.format(
-					"%1$"+(startIndent+2)+ "s", "->");
-			int nrSiblings = 0;
-			int siblingPos = -1;
-			for (int lineCtr=start+1; lineCtr<=end; ++lineCtr) {
-				String line = resultLines.get(lineCtr);
-				if (line.startsWith(siblingIndicator)) {
-					nrSiblings++;
-					siblingPos = lineCtr;
-				}
-			}
-			if (nrSiblings > 1) {
-				throw new Exception("Too many siblings");
-			}
-			if (nrSiblings == 1) {
-				thisRel.or(extractInfoRec(resultLines, start, siblingPos-1));
-				thisRel.or(extractInfoRec(resultLines, siblingPos, end));
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (field.equals("Plan")) {
+				extractInfoRec(parser, true);
 			} else {
-				// Check for table scans in start line
-				for (Entry<String, String> entry : 
-					queryInfo.tableAliasToName.entrySet()) {
-					String alias = entry.getKey();
-					String name = entry.getValue();
-					String scanIndicator = "on " + name + " " + alias;
-					if (startLine.contains(scanIndicator)) {
-						Integer tableID = queryInfo.tableAliasToID.get(alias);
-						thisRel.set(tableID);
-						//System.out.println("Recognized scan on " + alias);
-						break;
-					}
-				}				
-				thisRel.or(extractInfoRec(resultLines, start+1, end));
+				parser.skipChildren();
 			}
-			// Check whether it is a limit node
-			if (startLine.contains("Limit ")) {
-				//System.out.println("Recognized limit node");
-				// Are no actual numbers available due to skipping?
-				if (startLine.contains("(never executed)")) {
-					relToCard.put(thisRel, -1);
-				} else {
-					// Extract string describing actual measures
-					Pattern actualPattern = Pattern.compile(
-							"\\(actual\\stime=[0-9|\\.]*\\s" + 
-									"rows=\\d+\\s[^\\s]*\\)");
-					Matcher actualMatcher = actualPattern.matcher(
-							startLine);
-					if (!actualMatcher.find()) {
-						throw new Exception("no actual cost in " + 
-								startLine);
-					}
-					String actual = actualMatcher.group();
-					// Extract row count from actual measures
-					Pattern countPattern = Pattern.compile(
-							"rows=\\d+[\\s|\\)]");
-					Matcher countMatcher = countPattern.matcher(actual);
-					if (!countMatcher.find()) {
-						throw new Exception("no row count in " + actual);
-					}
-					String rowCount = countMatcher.group();
-					String countStr = rowCount.substring(5).trim();
-					Integer count = Integer.parseInt(countStr);
-					// Take into account additional null row
-					relToCard.put(thisRel, count);
+		}
+		parser.close();
+	}
+	/**
+	 * Extracts row counts and associated intermediate result
+	 * relations from one plan node (including its sub-plans)
+	 * of an explain-analyze result in JSON format.
+	 * 
+	 * @param parser	JSON parser positioned at start of node
+	 * @param root		whether node is the plan root
+	 * @return			relations scanned in node sub-tree
+	 * @throws Exception
+	 */
+	long extractInfoRec(JsonParser parser, boolean root) throws Exception {
+		long thisRel = 0;
+		boolean limitNode = false;
+		String relationName = null;
+		String alias = null;
+		double actualRows = 0;
+		long actualLoops = 0;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if (field.equals("Node Type")) {
+				limitNode = parser.getText().equals("Limit");
+			} else if (field.equals("Relation Name")) {
+				relationName = parser.getText();
+			} else if (field.equals("Alias")) {
+				alias = parser.getText();
+			} else if (field.equals("Actual Rows")) {
+				actualRows = parser.getValueAsDouble();
+			} else if (field.equals("Actual Loops")) {
+				actualLoops = parser.getValueAsLong();
+			} else if (root && field.equals("Shared Hit Blocks")) {
+				// Buffer usage of root includes sub-plans
+				sharedHitBlocks = parser.getValueAsLong();
+			} else if (root && field.equals("Shared Read Blocks")) {
+				sharedReadBlocks = parser.getValueAsLong();
+			} else if (field.equals("Plans")) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					thisRel |= extractInfoRec(parser, false);
 				}
-				//System.out.println(relToCard.toString());
+			} else {
+				parser.skipChildren();
 			}
-		} else {
-			// Extract information starting from next line
-			thisRel.or(extractInfoRec(resultLines, start+1, end));
+		}
+		// Check for table scans
+		if (alias != null && relationName != null && 
+				relationName.equals(queryInfo.tableAliasToName.get(alias))) {
+			Integer tableID = queryInfo.tableAliasToID.get(alias);
+			thisRel |= RelUtil.singleton(tableID);
+		}
+		// Extract row count of limit nodes (-1 if never executed)
+		if (limitNode) {
+			relToCard.put(thisRel, actualLoops == 0 ? 
+					-1 : (int)Math.round(actualRows));
 		}
 		return thisRel;
 	}
@@ -286,20 +302,20 @@ public class AnalyzeInfo {
 			CompositePlan compositePlan = (CompositePlan)plan;
 			ProbePlan leftPlan = compositePlan.leftPlan;
 			ProbePlan rightPlan = compositePlan.rightPlan;
-			BitSet leftRel = leftPlan.resultRel;
-			BitSet rightRel = rightPlan.resultRel;
+			long leftRel = leftPlan.resultRel;
+			long rightRel = rightPlan.resultRel;
 			CardStatus statusLeft = verifyRec(leftPlan, limit);
 			CardStatus statusRight = verifyRec(rightPlan, limit);
 			// Treat special case: due to early termination in
 			// one of the sub-plans, its result cardinality
 			// represents only a lower bound.
-			if (leftRel.cardinality() > 1) {
+			if (RelUtil.cardinality(leftRel) > 1) {
 				double leftCard = relToCard.get(leftRel);
 				if (leftCard <= 0) {
 					markAsBounds(rightPlan);
 				}				
 			}
-			if (rightRel.cardinality() > 1) {
+			if (RelUtil.cardinality(rightRel) > 1) {
 				double rightCard = relToCard.get(rightRel);
 				if (rightCard <= 0) {
 					markAsBounds(leftPlan);
@@ -332,7 +348,7 @@ public class AnalyzeInfo {
 	 * @param root	root of probe plan
 	 */
 	void markAsBounds(ProbePlan root) {
-		BitSet rel = root.resultRel;
+		long rel = root.resultRel;
 		if (relToCardStatus.get(rel) == CardStatus.EXACT) {
 			relToCardStatus.put(rel, CardStatus.LOWER_BOUND);
 		}
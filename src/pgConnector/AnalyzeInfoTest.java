@@ -0,0 +1,252 @@
+package pgConnector;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import SQLtools.QueryInfo;
+import common.RelUtil;
+import common.plans.CompositePlan;
+import common.plans.LeafPlan;
+import common.plans.ProbePlan;
+
+class AnalyzeInfoTest {
+	/**
+	 * Backend that returns the sub-query passed for analysis
+	 * as the explain-analyze result (in Postgres JSON format).
+	 */
+	static final ProbeBackend capturedBackend = new ProbeBackend() {
+		@Override
+		public ResultSet query(String sql, long timeoutMillis) {
+			return null;
+		}
+		@Override
+		public double[] estimateRows(List<String> queries, int batchSize) {
+			return null;
+		}
+		@Override
+		public long countRows(String query, long timeoutMillis) {
+			return 0;
+		}
+		@Override
+		public void analyze(String query, long timeoutMillis, boolean timing,
+				boolean buffers, AnalyzeInfo analyzeInfo) throws Exception {
+			analyzeInfo.extractInfo(query);
+		}
+		@Override
+		public String slicePredicate(String column, int nrSlices, int slice) {
+			return null;
+		}
+		@Override
+		public KeyCatalog keyCatalog() {
+			return null;
+		}
+		@Override
+		public void reserve(int nrConnections) {
+		}
+		@Override
+		public void setDeadline(long deadlineMillis) {
+		}
+		@Override
+		public void clearDeadline() {
+		}
+		@Override
+		public boolean deadlinePassed() {
+			return false;
+		}
+		@Override
+		public void closeAll() {
+		}
+	};
+	/**
+	 * Probe result joining all tables: the limit node on top of
+	 * the join between t and mi was executed, aliases differ
+	 * from table names (result of EXPLAIN (ANALYZE, TIMING OFF,
+	 * FORMAT JSON) with single quotes).
+	 */
+	static final String EXECUTED = ("[{'Plan': {'Node Type': 'Limit', " +
+			"'Parallel Aware': false, 'Startup Cost': 1.42, " +
+			"'Total Cost': 220.5, 'Plan Rows': 100, 'Plan Width': 8, " +
+			"'Actual Rows': 7, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Hash Join', 'Parent Relationship': 'Outer', " +
+			"'Join Type': 'Inner', 'Plan Rows': 100, " +
+			"'Actual Rows': 7, 'Actual Loops': 1, " +
+			"'Hash Cond': '(ci.movie_id = temp.id)', 'Plans': [" +
+			"{'Node Type': 'Seq Scan', 'Parent Relationship': 'Outer', " +
+			"'Relation Name': 'cast_info', 'Alias': 'ci', " +
+			"'Actual Rows': 20, 'Actual Loops': 1}, " +
+			"{'Node Type': 'Hash', 'Parent Relationship': 'Inner', " +
+			"'Actual Rows': 5, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Subquery Scan', 'Parent Relationship': 'Outer', " +
+			"'Alias': 'temp', 'Actual Rows': 5, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Limit', 'Parent Relationship': 'Subquery', " +
+			"'Actual Rows': 5, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Nested Loop', 'Parent Relationship': 'Outer', " +
+			"'Actual Rows': 5, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Seq Scan', 'Parent Relationship': 'Outer', " +
+			"'Relation Name': 'title', 'Alias': 't', " +
+			"'Actual Rows': 5, 'Actual Loops': 1}, " +
+			"{'Node Type': 'Index Scan', 'Parent Relationship': 'Inner', " +
+			"'Index Name': 'movie_id_movie_info', " +
+			"'Relation Name': 'movie_info', 'Alias': 'mi', " +
+			"'Actual Rows': 1, 'Actual Loops': 5}]}]}]}]}]}]}, " +
+			"'Planning Time': 0.51, 'Triggers': [], " +
+			"'Execution Time': 1.23}]").replace('\'', '"');
+	/**
+	 * Same probe where the scan on ci returned no rows, so the
+	 * hash join never executed the limit node on its inner side.
+	 */
+	static final String NOT_EXECUTED = ("[{'Plan': {'Node Type': 'Limit', " +
+			"'Actual Rows': 0, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Hash Join', 'Parent Relationship': 'Outer', " +
+			"'Actual Rows': 0, 'Actual Loops': 1, 'Plans': [" +
+			"{'Node Type': 'Seq Scan', 'Parent Relationship': 'Outer', " +
+			"'Relation Name': 'cast_info', 'Alias': 'ci', " +
+			"'Actual Rows': 0, 'Actual Loops': 1}, " +
+			"{'Node Type': 'Hash', 'Parent Relationship': 'Inner', " +
+			"'Actual Rows': 0, 'Actual Loops': 0, 'Plans': [" +
+			"{'Node Type': 'Subquery Scan', 'Parent Relationship': 'Outer', " +
+			"'Alias': 'temp', 'Actual Rows': 0, 'Actual Loops': 0, 'Plans': [" +
+			"{'Node Type': 'Limit', 'Parent Relationship': 'Subquery', " +
+			"'Actual Rows': 0, 'Actual Loops': 0, 'Plans': [" +
+			"{'Node Type': 'Nested Loop', 'Parent Relationship': 'Outer', " +
+			"'Actual Rows': 0, 'Actual Loops': 0, 'Plans': [" +
+			"{'Node Type': 'Seq Scan', 'Parent Relationship': 'Outer', " +
+			"'Relation Name': 'title', 'Alias': 't', " +
+			"'Actual Rows': 0, 'Actual Loops': 0}, " +
+			"{'Node Type': 'Index Scan', 'Parent Relationship': 'Inner', " +
+			"'Relation Name': 'movie_info', 'Alias': 'mi', " +
+			"'Actual Rows': 0, 'Actual Loops': 0}]}]}]}]}]}]}, " +
+			"'Planning Time': 0.48, 'Triggers': [], " +
+			"'Execution Time': 0.12}]").replace('\'', '"');
+
+	@Test
+	void test() throws Exception {
+		QueryInfo queryInfo = new QueryInfo("SELECT * FROM " +
+				"title AS t, movie_info AS mi, cast_info AS ci WHERE " +
+				"t.id = mi.movie_id AND t.id = ci.movie_id;");
+		int t = queryInfo.tableAliasToID.get("t");
+		int mi = queryInfo.tableAliasToID.get("mi");
+		int ci = queryInfo.tableAliasToID.get("ci");
+		ProbePlan tMiPlan = new CompositePlan(new LeafPlan(queryInfo, t, 1),
+				new LeafPlan(queryInfo, mi, 1), 1);
+		ProbePlan probePlan = new CompositePlan(tMiPlan,
+				new LeafPlan(queryInfo, ci, 1), 1);
+		long tMiRel = tMiPlan.resultRel;
+		long allRel = probePlan.resultRel;
+		long ciRel = RelUtil.singleton(ci);
+		// Counts of executed limit nodes are exact below the limit
+		AnalyzeInfo executed = new AnalyzeInfo(capturedBackend,
+				queryInfo, probePlan, 100, -1, EXECUTED);
+		assertEquals(2, executed.relToCard.size());
+		assertEquals(5, (int)executed.relToCard.get(tMiRel));
+		assertEquals(7, (int)executed.relToCard.get(allRel));
+		assertEquals(CardStatus.EXACT, executed.relToCardStatus.get(tMiRel));
+		assertEquals(CardStatus.EXACT, executed.relToCardStatus.get(allRel));
+		// Counts reaching the limit are lower bounds
+		AnalyzeInfo limited = new AnalyzeInfo(capturedBackend,
+				queryInfo, probePlan, 5, -1, EXECUTED);
+		assertEquals(CardStatus.LOWER_BOUND,
+				limited.relToCardStatus.get(tMiRel));
+		assertEquals(CardStatus.LOWER_BOUND,
+				limited.relToCardStatus.get(allRel));
+		// Limit nodes that never ran have unknown cardinality
+		AnalyzeInfo notExecuted = new AnalyzeInfo(capturedBackend,
+				queryInfo, probePlan, 100, -1, NOT_EXECUTED);
+		assertEquals(2, notExecuted.relToCard.size());
+		assertEquals(-1, (int)notExecuted.relToCard.get(tMiRel));
+		assertEquals(0, (int)notExecuted.relToCard.get(allRel));
+		assertEquals(CardStatus.UNKNOWN,
+				notExecuted.relToCardStatus.get(tMiRel));
+		assertEquals(CardStatus.EXACT,
+				notExecuted.relToCardStatus.get(allRel));
+		assertEquals(CardStatus.LOWER_BOUND,
+				notExecuted.relToCardStatus.get(ciRel));
+	}
+
+	@Test
+	void testSlices() throws Exception {
+		QueryInfo queryInfo = new QueryInfo("SELECT * FROM " +
+				"title AS t, movie_info AS mi, cast_info AS ci WHERE " +
+				"t.id = mi.movie_id AND t.id = ci.movie_id;");
+		int t = queryInfo.tableAliasToID.get("t");
+		int mi = queryInfo.tableAliasToID.get("mi");
+		int ci = queryInfo.tableAliasToID.get("ci");
+		ProbePlan tMiPlan = new CompositePlan(new LeafPlan(queryInfo, t, 1),
+				new LeafPlan(queryInfo, mi, 1), 1);
+		ProbePlan probePlan = new CompositePlan(tMiPlan,
+				new LeafPlan(queryInfo, ci, 1), 1);
+		long tMiRel = tMiPlan.resultRel;
+		long allRel = probePlan.resultRel;
+		// Slices on ci: t-mi is generated in the same way by each slice
+		AnalyzeInfo exactSlice = sliceInfo(queryInfo, probePlan,
+				tMiRel, 5, CardStatus.EXACT, allRel, 3, CardStatus.EXACT);
+		AnalyzeInfo boundSlice = sliceInfo(queryInfo, probePlan,
+				tMiRel, 4, CardStatus.LOWER_BOUND, allRel, 4, CardStatus.EXACT);
+		AnalyzeInfo unknownSlice = sliceInfo(queryInfo, probePlan,
+				tMiRel, -1, CardStatus.UNKNOWN, allRel, -1, CardStatus.UNKNOWN);
+		// Counts with sliced table add up and are exact if all are exact
+		AnalyzeInfo merged = new AnalyzeInfo(queryInfo, probePlan, ci,
+				Arrays.asList(exactSlice, boundSlice));
+		assertEquals(7, (int)merged.relToCard.get(allRel));
+		assertEquals(CardStatus.EXACT, merged.relToCardStatus.get(allRel));
+		// Other counts are exact if exact for one slice
+		assertEquals(5, (int)merged.relToCard.get(tMiRel));
+		assertEquals(CardStatus.EXACT, merged.relToCardStatus.get(tMiRel));
+		// Base tables keep the status of the first slice
+		assertFalse(merged.relToCard.containsKey(RelUtil.singleton(ci)));
+		assertEquals(CardStatus.EXACT, merged.relToCardStatus.get(
+				RelUtil.singleton(ci)));
+		// Unknown slices count as zero and yield lower bounds
+		merged = new AnalyzeInfo(queryInfo, probePlan, ci,
+				Arrays.asList(exactSlice, boundSlice, unknownSlice));
+		assertEquals(7, (int)merged.relToCard.get(allRel));
+		assertEquals(CardStatus.LOWER_BOUND, merged.relToCardStatus.get(allRel));
+		assertEquals(5, (int)merged.relToCard.get(tMiRel));
+		assertEquals(CardStatus.EXACT, merged.relToCardStatus.get(tMiRel));
+		// Without exact slice, the maximal lower bound is used
+		merged = new AnalyzeInfo(queryInfo, probePlan, ci,
+				Arrays.asList(unknownSlice, boundSlice));
+		assertEquals(4, (int)merged.relToCard.get(tMiRel));
+		assertEquals(CardStatus.LOWER_BOUND, merged.relToCardStatus.get(tMiRel));
+		assertEquals(4, (int)merged.relToCard.get(allRel));
+		assertEquals(CardStatus.LOWER_BOUND, merged.relToCardStatus.get(allRel));
+		// Cardinality is unknown if unknown for all slices
+		merged = new AnalyzeInfo(queryInfo, probePlan, ci,
+				Arrays.asList(unknownSlice));
+		assertEquals(CardStatus.UNKNOWN, merged.relToCardStatus.get(allRel));
+		assertEquals(CardStatus.UNKNOWN, merged.relToCardStatus.get(tMiRel));
+	}
+	/**
+	 * Creates the analysis result for one slice of a probe joining
+	 * three tables by extracting counts from a captured result and
+	 * setting cardinality and status of both join relations.
+	 * 
+	 * @param queryInfo		query joining three tables
+	 * @param probePlan		probe plan joining all tables
+	 * @param joinRel		join relation below the plan root
+	 * @param joinCard		cardinality of join relation in slice
+	 * @param joinStatus	status of join relation in slice
+	 * @param allRel		relation joining all tables
+	 * @param allCard		cardinality of all tables in slice
+	 * @param allStatus		status of all tables in slice
+	 * @return				analysis result for slice
+	 * @throws Exception
+	 */
+	AnalyzeInfo sliceInfo(QueryInfo queryInfo, ProbePlan probePlan,
+			long joinRel, int joinCard, CardStatus joinStatus, 
+			long allRel, int allCard, CardStatus allStatus) throws Exception {
+		AnalyzeInfo sliceInfo = new AnalyzeInfo(capturedBackend,
+				queryInfo, probePlan, 100, -1, EXECUTED);
+		sliceInfo.relToCard.put(joinRel, joinCard);
+		sliceInfo.relToCardStatus.put(joinRel, joinStatus);
+		sliceInfo.relToCard.put(allRel, allCard);
+		sliceInfo.relToCardStatus.put(allRel, allStatus);
+		return sliceInfo;
+	}
+
+}
@@ -0,0 +1,189 @@
+package pgConnector;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import SQLtools.PredInfo;
+import SQLtools.QueryInfo;
+import common.RelUtil;
+
+/**
+ * Contains key and foreign key constraints of a database as
+ * read from the catalog (for Postgres: unique indexes, including
+ * those of primary key and unique constraints, as well as
+ * foreign key constraints). Only tables that are visible
+ * in the search path are considered.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public class KeyCatalog {
+	/**
+	 * Maps table names (in lower case) to column sets whose
+	 * values are unique in that table.
+	 */
+	public final Map<String, Set<Set<String>>> uniqueKeys;
+	/**
+	 * Maps table names (in lower case) to the names of tables
+	 * referenced via foreign key constraints.
+	 */
+	public final Map<String, Set<String>> referencedTables;
+	/**
+	 * Retrieves unique columns from all Postgres unique indexes
+	 * without predicates or expressions (one row per index).
+	 */
+	static final String UNIQUE_SQL =
+			"SELECT c.relname, string_agg(a.attname, ',') " +
+			"FROM pg_index i " +
+			"JOIN pg_class c ON c.oid = i.indrelid " +
+			"JOIN pg_attribute a ON a.attrelid = c.oid " +
+			"AND a.attnum = ANY(i.indkey) " +
+			"WHERE i.indisunique AND i.indpred IS NULL " +
+			"AND i.indexprs IS NULL AND pg_table_is_visible(c.oid) " +
+			"GROUP BY i.indexrelid, c.relname;";
+	/**
+	 * Retrieves pairs of referencing and referenced tables
+	 * from all Postgres foreign key constraints.
+	 */
+	static final String FOREIGN_SQL =
+			"SELECT DISTINCT c.relname, r.relname " +
+			"FROM pg_constraint con " +
+			"JOIN pg_class c ON c.oid = con.conrelid " +
+			"JOIN pg_class r ON r.oid = con.confrelid " +
+			"WHERE con.contype = 'f' AND pg_table_is_visible(c.oid);";
+	/**
+	 * Matches equality predicates between two columns.
+	 */
+	static final Pattern EQUI_JOIN = Pattern.compile(
+			"\\s*(\\w+)\\.(\\w+)\\s*=\\s*(\\w+)\\.(\\w+)\\s*");
+	/**
+	 * Reads key constraints from the catalog of the given
+	 * database via catalog queries. The first query retrieves
+	 * one row per key with table name and comma-separated key
+	 * columns, the second one pairs of referencing and
+	 * referenced tables (foreign keys are not read if the
+	 * second query is null).
+	 * 
+	 * @param backend		database system to read catalog from
+	 * @param uniqueSQL		retrieves unique keys
+	 * @param foreignSQL	retrieves foreign keys or null
+	 * @throws Exception
+	 */
+	public KeyCatalog(ProbeBackend backend, String uniqueSQL, 
+			String foreignSQL) throws Exception {
+		uniqueKeys = new HashMap<String, Set<Set<String>>>();
+		referencedTables = new HashMap<String, Set<String>>();
+		ResultSet uniqueResult = backend.query(uniqueSQL, -1);
+		while (uniqueResult.next()) {
+			String table = uniqueResult.getString(1).toLowerCase();
+			Set<String> columns = new HashSet<String>(Arrays.asList(
+					uniqueResult.getString(2).toLowerCase().split(",")));
+			if (!uniqueKeys.containsKey(table)) {
+				uniqueKeys.put(table, new HashSet<Set<String>>());
+			}
+			uniqueKeys.get(table).add(columns);
+		}
+		uniqueResult.close();
+		if (foreignSQL != null) {
+			ResultSet foreignResult = backend.query(foreignSQL, -1);
+			while (foreignResult.next()) {
+				String table = foreignResult.getString(1).toLowerCase();
+				String refTable = foreignResult.getString(2).toLowerCase();
+				if (!referencedTables.containsKey(table)) {
+					referencedTables.put(table, new HashSet<String>());
+				}
+				referencedTables.get(table).add(refTable);
+			}
+			foreignResult.close();
+		}
+	}
+	/**
+	 * Returns true iff the given columns contain a unique key
+	 * of the given table.
+	 * 
+	 * @param table		table name
+	 * @param columns	set of column names (in lower case)
+	 * @return			true iff columns determine unique rows
+	 */
+	public boolean containsKey(String table, Set<String> columns) {
+		Set<Set<String>> keys = uniqueKeys.get(table.toLowerCase());
+		if (keys != null) {
+			for (Set<String> key : keys) {
+				if (columns.containsAll(key)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	/**
+	 * Maps key constraints onto the tables of a query: a table is
+	 * on the key side of a join with another table if the query
+	 * equates a unique key of that table with columns of the other
+	 * table (so each row of the other table has at most one join
+	 * partner).
+	 * 
+	 * @param queryInfo	meta-data about query
+	 * @return			maps table IDs on the foreign key side to
+	 * 					IDs of the tables on the key side
+	 */
+	public Map<Integer, Set<Integer>> foreignToKey(QueryInfo queryInfo) {
+		// Maps foreign and key table to equated key table columns
+		Map<Integer, Map<Integer, Set<String>>> equatedColumns = 
+				new HashMap<Integer, Map<Integer, Set<String>>>();
+		for (PredInfo pred : queryInfo.predicates) {
+			Matcher matcher = EQUI_JOIN.matcher(pred.sql);
+			if (RelUtil.cardinality(pred.tableIDs) == 2 && matcher.matches()) {
+				Integer table1 = queryInfo.tableAliasToID.get(matcher.group(1));
+				Integer table2 = queryInfo.tableAliasToID.get(matcher.group(3));
+				if (table1 != null && table2 != null && !table1.equals(table2)) {
+					addColumn(equatedColumns, table2, table1, matcher.group(2));
+					addColumn(equatedColumns, table1, table2, matcher.group(4));
+				}
+			}
+		}
+		// Check for unique keys among equated columns
+		Map<Integer, Set<Integer>> foreignToKey = new HashMap<Integer, Set<Integer>>();
+		for (int foreignTable : equatedColumns.keySet()) {
+			Map<Integer, Set<String>> keyColumns = equatedColumns.get(foreignTable);
+			for (int keyTable : keyColumns.keySet()) {
+				String keyAlias = queryInfo.tableIDtoAlias.get(keyTable);
+				String keyName = queryInfo.tableAliasToName.get(keyAlias);
+				if (containsKey(keyName, keyColumns.get(keyTable))) {
+					if (!foreignToKey.containsKey(foreignTable)) {
+						foreignToKey.put(foreignTable, new HashSet<Integer>());
+					}
+					foreignToKey.get(foreignTable).add(keyTable);
+				}
+			}
+		}
+		System.out.println("Foreign to key tables:\t" + foreignToKey.toString());
+		return foreignToKey;
+	}
+	/**
+	 * Registers a column of a potential key table that is
+	 * equated with a column of a potential foreign key table.
+	 * 
+	 * @param equatedColumns	maps table pairs to equated columns
+	 * @param foreignTable		ID of potential foreign key table
+	 * @param keyTable			ID of table containing column
+	 * @param column			name of equated column
+	 */
+	static void addColumn(Map<Integer, Map<Integer, Set<String>>> equatedColumns,
+			int foreignTable, int keyTable, String column) {
+		if (!equatedColumns.containsKey(foreignTable)) {
+			equatedColumns.put(foreignTable, new HashMap<Integer, Set<String>>());
+		}
+		Map<Integer, Set<String>> keyColumns = equatedColumns.get(foreignTable);
+		if (!keyColumns.containsKey(keyTable)) {
+			keyColumns.put(keyTable, new HashSet<String>());
+		}
+		keyColumns.get(keyTable).add(column.toLowerCase());
+	}
+}
@@ -1,32 +1,124 @@
 package pgConnector;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
 
 /**
  * Contains low-level methods for issuing
- * queries to Postgres.
+ * queries to Postgres. Queries lease
+ * connections from a bounded pool.
  * 
  * @author immanueltrummer
  *
  */
-public class PgConnector {
+public class PgConnector implements ProbeBackend {
 	/**
 	 * URL pointing to current database.
 	 */
 	final String url;
 	/**
-	 * Connection to database system (initialized
-	 * in constructor).
+	 * Name of current database.
+	 */
+	final String database;
+	/**
+	 * User name for database access.
+	 */
+	final String user;
+	/**
+	 * Password for database access.
+	 */
+	final String password;
+	/**
+	 * Maximal number of connections held by this connector
+	 * (connections are opened on demand).
+	 */
+	int maxConnections;
+	/**
+	 * Amount of memory used by query operators before spilling
+	 * to disk in each session (e.g., "64MB"). The server default
+	 * is used if this is null.
+	 */
+	public final String workMem;
+	/**
+	 * Maximal number of parallel workers per gather operator in
+	 * each session. The server default is used if negative.
+	 */
+	public final int maxParallelWorkers;
+	/**
+	 * All connections opened by this connector.
 	 */
-	final Connection connection;
+	final List<Connection> allConnections = new ArrayList<Connection>();
 	/**
-	 * Statement used for queries (initialized
-	 * in constructor).
+	 * Connections that are currently not leased for a query.
 	 */
-	final Statement statement;
+	final BlockingQueue<Connection> idleConnections = 
+			new LinkedBlockingQueue<Connection>();
+	/**
+	 * Creates result sets that hold query results in memory
+	 * (so that connections can be returned right after a query).
+	 */
+	static RowSetFactory rowSetFactory;
+	/**
+	 * Creates a temporary function that explains each query in
+	 * a given array and returns the number of rows estimated by
+	 * the Postgres optimizer (in the same format as explain).
+	 */
+	static final String ESTIMATOR_SQL = 
+			"CREATE OR REPLACE FUNCTION pg_temp.estimate_rows(queries text[]) " + 
+			"RETURNS TABLE(idx integer, est double precision) AS $$ " + 
+			"DECLARE plan json; " + 
+			"BEGIN " + 
+			"FOR i IN 1 .. coalesce(array_length(queries, 1), 0) LOOP " + 
+			"EXECUTE 'EXPLAIN (FORMAT JSON) ' || queries[i] INTO plan; " + 
+			"idx := i; " + 
+			"est := (plan->0->'Plan'->>'Plan Rows')::double precision; " + 
+			"RETURN NEXT; " + 
+			"END LOOP; " + 
+			"END $$ LANGUAGE plpgsql;";
+	/**
+	 * Statements that are currently executing a query.
+	 */
+	final Set<Statement> activeStatements = Collections.newSetFromMap(
+			new ConcurrentHashMap<Statement, Boolean>());
+	/**
+	 * Point in time (in milliseconds since the epoch) at which all
+	 * queries are cancelled (no deadline if this is negative).
+	 */
+	volatile long deadlineMillis = -1;
+	/**
+	 * Cancels active queries once the deadline passes.
+	 */
+	Timer watchdog;
+	/**
+	 * Connections whose session contains the estimator function.
+	 */
+	final Set<Connection> estimatorSessions = Collections.newSetFromMap(
+			new ConcurrentHashMap<Connection, Boolean>());
+	/**
+	 * Maps database URLs to key constraints read from the
+	 * catalog (constraints are read once per database).
+	 */
+	static final Map<String, KeyCatalog> keyCatalogs = 
+			new ConcurrentHashMap<String, KeyCatalog>();
 	/**
 	 * Constructor initializes connection to the database.
 	 * 
@@ -38,9 +130,45 @@ public class PgConnector {
 	 */
 	public PgConnector(String user, String password, 
 			String database) throws Exception {
+		this(user, password, database, 1, null, -1);
+	}
+	/**
+	 * Constructor initializes a pool of connections to the
+	 * database that are shared among concurrent queries. The
+	 * first connection is opened right away, further connections
+	 * are opened when needed (up to the given pool size).
+	 * 
+	 * @param user					user name for database access
+	 * @param password				password for database access
+	 * @param database				name of database to access
+	 * @param maxConnections		maximal number of connections
+	 * @param workMem				memory per operator or null
+	 * @param maxParallelWorkers	workers per gather or negative
+	 * @throws Exception
+	 */
+	public PgConnector(String user, String password, String database,
+			int maxConnections, String workMem, 
+			int maxParallelWorkers) throws Exception {
 		this.url = "jdbc:postgresql:" + database;
-		this.connection = DriverManager.getConnection(url, user, password);
-		this.statement = connection.createStatement();
+		this.database = database;
+		this.user = user;
+		this.password = password;
+		this.maxConnections = Math.max(1, maxConnections);
+		this.workMem = workMem;
+		this.maxParallelWorkers = maxParallelWorkers;
+		Connection connection = openConnection();
+		allConnections.add(connection);
+		idleConnections.add(connection);
+	}
+	/**
+	 * Opens a new connection and initializes session settings.
+	 * 
+	 * @return	new database connection
+	 * @throws Exception
+	 */
+	Connection openConnection() throws Exception {
+		Connection connection = DriverManager.getConnection(url, user, password);
+		Statement statement = connection.createStatement();
 		// Disable nested loop joins following recommendations
 		// in paper proposing join order benchmark - if this
 		// is removed, the extraction of cardinality estimates
@@ -49,20 +177,285 @@ public class PgConnector {
 		statement.execute("set enable_nestloop = false;");
 		//statement.execute("set enable_mergejoin = false;");
 		//statement.execute("set enable_hashjoin = false;");
+		if (workMem != null) {
+			statement.execute("set work_mem = '" + workMem + "';");
+		}
+		if (maxParallelWorkers >= 0) {
+			statement.execute("set max_parallel_workers_per_gather = " + 
+					maxParallelWorkers + ";");
+		}
+		statement.close();
+		return connection;
 	}
 	/**
-	 * Returns a result set for a given SQL query.
+	 * Leases a connection for exclusive use, opening a new
+	 * connection if all connections are busy and the pool is
+	 * not full yet. Otherwise, waits until a connection is
+	 * returned.
+	 * 
+	 * @return	connection that must be returned after use
+	 * @throws Exception
+	 */
+	Connection lease() throws Exception {
+		Connection connection = idleConnections.poll();
+		if (connection == null) {
+			synchronized (this) {
+				if (allConnections.size() < maxConnections) {
+					connection = openConnection();
+					allConnections.add(connection);
+				}
+			}
+		}
+		if (connection == null) {
+			connection = idleConnections.take();
+		}
+		return connection;
+	}
+	/**
+	 * Returns a leased connection to the pool.
+	 * 
+	 * @param connection	previously leased connection
+	 */
+	void release(Connection connection) {
+		idleConnections.add(connection);
+	}
+	/**
+	 * Increases the maximal number of connections if it is below
+	 * the given number (allows to issue that many queries in
+	 * parallel via this connector).
+	 * 
+	 * @param nrConnections	minimal size of connection pool
+	 */
+	@Override
+	public synchronized void reserve(int nrConnections) {
+		maxConnections = Math.max(maxConnections, nrConnections);
+	}
+	/**
+	 * Hashes the textual column value (null values are
+	 * assigned to the first slice).
+	 */
+	@Override
+	public String slicePredicate(String column, int nrSlices, int slice) {
+		return "(coalesce(hashtext(" + column + 
+				"::text), 0) & 2147483647) % " + nrSlices + " = " + slice;
+	}
+	/**
+	 * Returns key constraints of the current database, reading
+	 * them from the catalog on the first invocation.
+	 * 
+	 * @return	key constraints of current database
+	 * @throws Exception
+	 */
+	@Override
+	public KeyCatalog keyCatalog() throws Exception {
+		KeyCatalog keyCatalog = keyCatalogs.get(url);
+		if (keyCatalog == null) {
+			keyCatalog = new KeyCatalog(this, 
+					KeyCatalog.UNIQUE_SQL, KeyCatalog.FOREIGN_SQL);
+			keyCatalogs.put(url, keyCatalog);
+		}
+		return keyCatalog;
+	}
+	/**
+	 * Sets a deadline for all queries issued via this connector:
+	 * queries are cancelled once the deadline passes and queries
+	 * issued later fail right away. Replaces prior deadlines.
+	 * 
+	 * @param deadlineMillis	deadline in milliseconds since epoch
+	 */
+	@Override
+	public synchronized void setDeadline(long deadlineMillis) {
+		clearDeadline();
+		this.deadlineMillis = deadlineMillis;
+		watchdog = new Timer("query watchdog", true);
+		watchdog.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				cancelActive();
+			}
+		}, new Date(deadlineMillis));
+	}
+	/**
+	 * Removes the query deadline and stops the watchdog.
+	 */
+	@Override
+	public synchronized void clearDeadline() {
+		if (watchdog != null) {
+			watchdog.cancel();
+			watchdog = null;
+		}
+		deadlineMillis = -1;
+	}
+	/**
+	 * Returns true iff a deadline was set and has passed.
+	 * 
+	 * @return	true iff queries are cancelled due to deadline
+	 */
+	@Override
+	public boolean deadlinePassed() {
+		long deadline = deadlineMillis;
+		return deadline >= 0 && System.currentTimeMillis() >= deadline;
+	}
+	/**
+	 * Cancels all queries that are currently executing.
+	 */
+	void cancelActive() {
+		for (Statement statement : activeStatements) {
+			try {
+				statement.cancel();
+			} catch (Exception e) {
+				System.out.println("Cancellation failed:	" + e.getMessage());
+			}
+		}
+	}
+	/**
+	 * Sets the statement timeout of the session to the given
+	 * number of milliseconds, reduced to the time left until
+	 * the deadline (if any). The server terminates queries that
+	 * exceed the timeout, even if the watchdog cannot reach the
+	 * session.
+	 * 
+	 * @param connection	connection whose session to configure
+	 * @param timeoutMillis	timeout or non-positive for no timeout
+	 * @throws Exception
+	 */
+	void setTimeout(Connection connection, long timeoutMillis) throws Exception {
+		long deadline = deadlineMillis;
+		if (deadline >= 0) {
+			long remainingMillis = deadline - System.currentTimeMillis();
+			if (remainingMillis <= 0) {
+				throw new Exception("Query deadline passed");
+			}
+			timeoutMillis = timeoutMillis > 0 ? 
+					Math.min(timeoutMillis, remainingMillis) : remainingMillis;
+		}
+		Statement statement = connection.createStatement();
+		statement.execute("set statement_timeout = " + 
+				Math.max(0, timeoutMillis) + ";");
+		statement.close();
+	}
+	/**
+	 * Returns a result set for a given SQL query. The query is
+	 * executed over a leased connection and its result is held in
+	 * memory, so the connection is returned before this method
+	 * returns (results of several queries may be read concurrently).
+	 * The query is cancelled at the deadline (if one is set).
 	 * 
 	 * @param sql			sql query string
 	 * @param timeoutMillis	number of milliseconds until timeout
 	 * @return				result set with query result
 	 * @throws Exception
 	 */
+	@Override
 	public ResultSet query(String sql, long timeoutMillis) throws Exception {
-		if (timeoutMillis > 0) {
-			statement.setQueryTimeout((int)(timeoutMillis / 1000));			
+		Connection connection = lease();
+		try {
+			setTimeout(connection, timeoutMillis);
+			Statement statement = connection.createStatement();
+			activeStatements.add(statement);
+			try {
+				ResultSet result = statement.executeQuery(sql);
+				CachedRowSet cachedResult = rowSetFactory().createCachedRowSet();
+				cachedResult.populate(result);
+				result.close();
+				return cachedResult;
+			} finally {
+				activeStatements.remove(statement);
+				statement.close();
+			}
+		} finally {
+			release(connection);
 		}
-		return statement.executeQuery(sql);
+	}
+	/**
+	 * Returns factory for in-memory result sets (creating
+	 * it on the first invocation).
+	 * 
+	 * @return	factory for cached result sets
+	 * @throws Exception
+	 */
+	public static synchronized RowSetFactory rowSetFactory() throws Exception {
+		if (rowSetFactory == null) {
+			rowSetFactory = RowSetProvider.newFactory();
+		}
+		return rowSetFactory;
+	}
+	/**
+	 * Obtains the number of result rows estimated by the Postgres
+	 * optimizer for each query in a list (like explain). Queries
+	 * are explained on the server side in batches of given size,
+	 * requiring only one round trip per batch.
+	 * 
+	 * @param queries	queries to estimate (without explain prefix)
+	 * @param batchSize	maximal number of queries per round trip
+	 * @return			estimated number of rows for each query
+	 * @throws Exception
+	 */
+	@Override
+	public double[] estimateRows(List<String> queries, 
+			int batchSize) throws Exception {
+		Connection connection = lease();
+		try {
+			if (!estimatorSessions.contains(connection)) {
+				Statement statement = connection.createStatement();
+				statement.execute(ESTIMATOR_SQL);
+				statement.close();
+				estimatorSessions.add(connection);
+			}
+			setTimeout(connection, -1);
+			int nrQueries = queries.size();
+			double[] rows = new double[nrQueries];
+			PreparedStatement estimateStatement = connection.prepareStatement(
+					"SELECT idx, est FROM pg_temp.estimate_rows(?);");
+			activeStatements.add(estimateStatement);
+			try {
+				for (int start=0; start<nrQueries; start+=batchSize) {
+					int end = Math.min(nrQueries, start + batchSize);
+					String[] batch = new String[end - start];
+					for (int queryCtr=start; queryCtr<end; ++queryCtr) {
+						// Remove semicolon for dynamic execution
+						String query = queries.get(queryCtr).trim();
+						if (query.endsWith(";")) {
+							query = query.substring(0, query.length() - 1);
+						}
+						batch[queryCtr - start] = query;
+					}
+					Array batchArray = connection.createArrayOf("text", batch);
+					estimateStatement.setArray(1, batchArray);
+					ResultSet result = estimateStatement.executeQuery();
+					while (result.next()) {
+						rows[start + result.getInt(1) - 1] = result.getDouble(2);
+					}
+					result.close();
+					batchArray.free();
+				}
+			} finally {
+				activeStatements.remove(estimateStatement);
+				estimateStatement.close();
+			}
+			return rows;
+		} finally {
+			release(connection);
+		}
+	}
+	@Override
+	public long countRows(String query, long timeoutMillis) throws Exception {
+		ResultSet result = query("SELECT COUNT(*) FROM (" + 
+				query + ") as temp", timeoutMillis);
+		result.next();
+		return result.getLong(1);
+	}
+	@Override
+	public void analyze(String query, long timeoutMillis, boolean timing,
+			boolean buffers, AnalyzeInfo analyzeInfo) throws Exception {
+		// Row counts are extracted from results in JSON format
+		String analyzeQuery = AnalyzeInfo.analyzePrefix(
+				timing, buffers) + query;
+		ResultSet result = query(analyzeQuery, timeoutMillis);
+		if (!result.next()) {
+			throw new Exception("No result for " + analyzeQuery);
+		}
+		analyzeInfo.extractInfo(result.getString(1));
 	}
 	/**
 	 * Extracts a string representation from a query result for one
@@ -82,7 +475,14 @@ public class PgConnector {
 	/**
 	 * Closes all connections held by his object.
 	 */
-	public void closeAll() throws Exception {
-		connection.close();
+	@Override
+	public synchronized void closeAll() throws Exception {
+		clearDeadline();
+		for (Connection connection : allConnections) {
+			connection.close();
+		}
+		allConnections.clear();
+		idleConnections.clear();
+		estimatorSessions.clear();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package pgConnector;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Database system used by optimizers to obtain cardinality
+ * estimates, exact counts, and bounded probes that report
+ * row counts per plan node.
+ * 
+ * @author immanueltrummer
+ *
+ */
+public interface ProbeBackend {
+	/**
+	 * Returns a result set for a given SQL query (the result
+	 * remains valid after other queries were issued).
+	 * 
+	 * @param sql			sql query string
+	 * @param timeoutMillis	number of milliseconds until timeout
+	 * @return				result set with query result
+	 * @throws Exception
+	 */
+	public ResultSet query(String sql, long timeoutMillis) throws Exception;
+	/**
+	 * Obtains the number of result rows estimated by the query
+	 * optimizer for each query in a list.
+	 * 
+	 * @param queries	queries to estimate (without explain prefix)
+	 * @param batchSize	maximal number of queries per round trip
+	 * @return			estimated number of rows for each query
+	 * @throws Exception
+	 */
+	public double[] estimateRows(List<String> queries,
+			int batchSize) throws Exception;
+	/**
+	 * Returns the exact number of result rows of a query.
+	 * 
+	 * @param query			query whose result rows to count
+	 * @param timeoutMillis	number of milliseconds until timeout
+	 * @return				number of rows in query result
+	 * @throws Exception
+	 */
+	public long countRows(String query, long timeoutMillis) throws Exception;
+	/**
+	 * Executes a probe query and adds the actual row counts
+	 * of its limit nodes to the given analysis result (mapping
+	 * the tables scanned below each limit node to the number of
+	 * rows it produced, -1 if it was never executed).
+	 * 
+	 * @param query			probe query (without explain prefix)
+	 * @param timeoutMillis	number of milliseconds until timeout
+	 * @param timing		whether to measure time per plan node
+	 * @param buffers		whether to measure buffer usage
+	 * @param analyzeInfo	analysis result to add row counts to
+	 * @throws Exception
+	 */
+	public void analyze(String query, long timeoutMillis, boolean timing,
+			boolean buffers, AnalyzeInfo analyzeInfo) throws Exception;
+	/**
+	 * Returns a predicate selecting one out of several slices
+	 * that partition a table by hash values of the given column
+	 * (each row, including rows with null values, belongs to
+	 * exactly one slice).
+	 * 
+	 * @param column	qualified column to partition on
+	 * @param nrSlices	number of slices
+	 * @param slice		index of slice to select
+	 * @return			SQL predicate selecting slice
+	 */
+	public String slicePredicate(String column, int nrSlices, int slice);
+	/**
+	 * Returns key constraints of the current database.
+	 * 
+	 * @return	key constraints of current database
+	 * @throws Exception
+	 */
+	public KeyCatalog keyCatalog() throws Exception;
+	/**
+	 * Allows to issue at least the given number of queries
+	 * in parallel (if supported by the database system).
+	 * 
+	 * @param nrConnections	number of concurrent queries
+	 */
+	public void reserve(int nrConnections);
+	/**
+	 * Sets a deadline after which all queries are cancelled.
+	 * 
+	 * @param deadlineMillis	deadline in milliseconds since epoch
+	 */
+	public void setDeadline(long deadlineMillis);
+	/**
+	 * Removes the query deadline.
+	 */
+	public void clearDeadline();
+	/**
+	 * Returns true iff a deadline was set and has passed.
+	 * 
+	 * @return	true iff queries are cancelled due to deadline
+	 */
+	public boolean deadlinePassed();
+	/**
+	 * Closes all connections to the database system.
+	 * 
+	 * @throws Exception
+	 */
+	public void closeAll() throws Exception;
+}
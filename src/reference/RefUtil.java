@@ -3,16 +3,19 @@ package reference;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import SQLtools.QueryInfo;
+import common.RelUtil;
 import optimizers.safe.RelInfo;
+import pgConnector.KeyCatalog;
 
 /**
  * Contains utility methods to read reference solutions
@@ -35,13 +38,13 @@ public class RefUtil {
 	/**
 	 * Reference cardinality for each relation.
 	 */
-	public final Map<BitSet, Double> refCard;
+	public final Map<Long, Double> refCard;
 	/**
 	 * Captures key-foreign key constraints and maps
 	 * each table index on the foreign key side to the 
-	 * corresponding table index on the key side.
+	 * corresponding table indices on the key side.
 	 */
-	public final Map<Integer, Integer> foreignToKey;
+	public final Map<Integer, Set<Integer>> foreignToKey;
 	/**
 	 * Read data for specified test case from disc.
 	 * 
@@ -64,6 +67,19 @@ public class RefUtil {
 		this.refCard = extractCard(jsonQuery, queryInfo);
 		this.foreignToKey = extractConstraints(jsonQuery, queryInfo);
 	}
+	/**
+	 * Initializes key-foreign key constraints from the database
+	 * catalog (no reference solution is available in that case).
+	 * 
+	 * @param queryInfo		meta-data describing the query
+	 * @param keyCatalog	key constraints read from catalog
+	 */
+	public RefUtil(QueryInfo queryInfo, KeyCatalog keyCatalog) {
+		this.jsonQuery = null;
+		this.queryInfo = queryInfo;
+		this.refCard = new HashMap<Long, Double>();
+		this.foreignToKey = keyCatalog.foreignToKey(queryInfo);
+	}
 	/**
 	 * Extracts reference cardinality for each relation.
 	 * 
@@ -71,9 +87,9 @@ public class RefUtil {
 	 * @param queryInfo		meta-data about query
 	 * @return				a mapping from relations to cardinalities
 	 */
-	static Map<BitSet, Double> extractCard(JSONquery jsonQuery, 
+	static Map<Long, Double> extractCard(JSONquery jsonQuery, 
 			QueryInfo queryInfo) throws Exception {
-		Map<BitSet, Double> refCard = new HashMap<BitSet, Double>();
+		Map<Long, Double> refCard = new HashMap<Long, Double>();
 		// Treat singleton relations
 		for (JSONrelation jsonRel : jsonQuery.getrelations()) {
 			String alias = jsonRel.getName();
@@ -82,18 +98,17 @@ public class RefUtil {
 			if (tableID == null) {
 				throw new Exception("Unknown table alias " + alias);
 			}
-			BitSet rel = new BitSet();
-			rel.set(tableID);
+			long rel = RelUtil.singleton(tableID);
 			refCard.put(rel, curRelCard);
 		}
 		// Treat composite relations
 		for (JSONsize size : jsonQuery.getsizes()) {
 			double curCard = size.getCardinality();
 			List<String> aliasList = size.getRelations();
-			BitSet rel = new BitSet();
+			long rel = 0;
 			for (String alias : aliasList) {
 				Integer tableID = queryInfo.tableAliasToID.get(alias);
-				rel.set(tableID);
+				rel |= RelUtil.singleton(tableID);
 			}
 			refCard.put(rel, curCard);
 		}
@@ -106,11 +121,11 @@ public class RefUtil {
 	 * @param queryInfo		meta-data on input query
 	 * @return				mappings from foreign key to key tables
 	 */
-	static Map<Integer, Integer> extractConstraints(JSONquery jsonQuery, 
+	static Map<Integer, Set<Integer>> extractConstraints(JSONquery jsonQuery, 
 			QueryInfo queryInfo) throws Exception {
 		// Iterate over join relationships
-		Map<Integer, Integer> foreignToKey = 
-				new HashMap<Integer, Integer>();
+		Map<Integer, Set<Integer>> foreignToKey = 
+				new HashMap<Integer, Set<Integer>>();
 		for (JSONjoin join : jsonQuery.getJoins()) {
 			String keySide = join.getPrimaryKeySide();
 			// Check for constraint
@@ -130,7 +145,10 @@ public class RefUtil {
 				// Get table IDs associated with aliases
 				Integer keySideID = queryInfo.tableAliasToID.get(keySide);
 				Integer foreignSideID = queryInfo.tableAliasToID.get(foreignSide);
-				foreignToKey.put(foreignSideID, keySideID);
+				if (!foreignToKey.containsKey(foreignSideID)) {
+					foreignToKey.put(foreignSideID, new HashSet<Integer>());
+				}
+				foreignToKey.get(foreignSideID).add(keySideID);
 			}
 		}
 		return foreignToKey;
@@ -143,13 +161,16 @@ public class RefUtil {
 	 * @param rel2	relation to test for key side
 	 * @return
 	 */
-	public boolean onForeignSide(BitSet rel1, BitSet rel2) {
+	public boolean onForeignSide(long rel1, long rel2) {
 		// Iterate over all key-foreign key constraints
-		for (Entry<Integer, Integer> entry : foreignToKey.entrySet()) {
+		for (Entry<Integer, Set<Integer>> entry : foreignToKey.entrySet()) {
 			int foreignSide = entry.getKey();
-			int keySide = entry.getValue();
-			if (rel1.get(foreignSide) && rel2.get(keySide)) {
-				return true;
+			if (RelUtil.contains(rel1, foreignSide)) {
+				for (int keySide : entry.getValue()) {
+					if (RelUtil.contains(rel2, keySide)) {
+						return true;
+					}
+				}
 			}
 		}
 		return false;
@@ -164,7 +185,7 @@ public class RefUtil {
 	 * @param tolerance		relative tolerance when comparing cardinality
 	 * @throws Exception
 	 */
-	public void testRelInfos(Map<BitSet, RelInfo> relInfos, 
+	public void testRelInfos(Map<Long, RelInfo> relInfos, 
 			boolean timeout, double tolerance) throws Exception {
 		// Compare number of considered relations
 		if (relInfos.size() != refCard.size()) {
@@ -173,16 +194,16 @@ public class RefUtil {
 		}
 		System.out.println("Verified relation count");
 		// Compare set of considered relations
-		for (BitSet refRel : refCard.keySet()) {
+		for (long refRel : refCard.keySet()) {
 			if (!relInfos.containsKey(refRel)) {
 				throw new Exception("Reference relation " + 
-						refRel.toString() + " was not considered");
+						RelUtil.toString(refRel) + " was not considered");
 			}
 		}
 		System.out.println("Verified relations");
 		// Compare cardinality values
-		for (Entry<BitSet, RelInfo> entryToTest : relInfos.entrySet()) {
-			BitSet rel = entryToTest.getKey();
+		for (Entry<Long, RelInfo> entryToTest : relInfos.entrySet()) {
+			long rel = entryToTest.getKey();
 			RelInfo info = entryToTest.getValue();
 			Double curCard = refCard.get(rel);
 			// Verification depends on relation status
@@ -197,7 +218,7 @@ public class RefUtil {
 			case EXCLUDED:
 				if (info.lowerCardBound > curCard * (1+tolerance)) {
 					throw new Exception("Cardinality estimate too "
-							+ "large for " + rel.toString() + " (" +
+							+ "large for " + RelUtil.toString(rel) + " (" +
 							info.lowerCardBound + " vs. " + curCard + 
 							")");
 				}
@@ -205,18 +226,18 @@ public class RefUtil {
 			case VERIFIED:
 				if (info.lowerCardBound > curCard * (1+tolerance)) {
 					throw new Exception("Cardinality too large for "
-							+ "relation " + rel.toString());
+							+ "relation " + RelUtil.toString(rel));
 				}
 				if (info.lowerCardBound < curCard * (1-tolerance)) {
 					throw new Exception("Cardinality too small for "
-							+ "relation " + rel.toString() +
+							+ "relation " + RelUtil.toString(rel) +
 							" (" + info.lowerCardBound + 
 							" instead of " + curCard);
 				}
 				break;
 			default:
 				throw new Exception("Unknown relation status for " +
-						rel.toString() + " - " + info.toString());
+						RelUtil.toString(rel) + " - " + info.toString());
 			}
 		}
 		System.out.println("Verified relation cardinalities");
@@ -231,9 +252,9 @@ public class RefUtil {
 	public double cardVariance(boolean ignoreBaseTables) {
 		// Extract relevant cardinality values
 		List<Double> cardVals = new ArrayList<Double>();
-		for (Entry<BitSet, Double> entry : refCard.entrySet()) {
-			BitSet rel = entry.getKey();
-			if (rel.cardinality() > 1 || !ignoreBaseTables) {
+		for (Entry<Long, Double> entry : refCard.entrySet()) {
+			long rel = entry.getKey();
+			if (RelUtil.cardinality(rel) > 1 || !ignoreBaseTables) {
 				double card = entry.getValue();
 				cardVals.add(card);
 			}